@@ -0,0 +1,76 @@
+package com.redhat.coolstore.service;
+
+import java.lang.reflect.Proxy;
+import java.util.Hashtable;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.naming.spi.InitialContextFactory;
+
+import com.redhat.coolstore.model.ShoppingCart;
+
+/**
+ * The shipping lookup as it was before {@link ShippingServiceProxy}: a new
+ * {@link InitialContext} and a lookup of the {@code ejb:} name for every call. Kept only as
+ * the baseline for {@link PricingBenchmark}.
+ *
+ * The WildFly naming client is replaced by {@link Factory}, whose contexts return the
+ * service from a static field, so this measures the JNDI machinery the old code went through
+ * on each call but not the remoting round trip the real client adds on top of it.
+ */
+final class PerCallLookupShipping {
+
+    private static final String NAME = "ejb:/ROOT/ShippingService!" + ShippingServiceRemote.class.getName();
+
+    static volatile ShippingServiceRemote bound;
+
+    static double calculateShipping(ShoppingCart sc) {
+        return lookupShippingServiceRemote().calculateShipping(sc);
+    }
+
+    static double calculateShippingInsurance(ShoppingCart sc) {
+        return lookupShippingServiceRemote().calculateShippingInsurance(sc);
+    }
+
+    private static ShippingServiceRemote lookupShippingServiceRemote() {
+        try {
+            final Hashtable<String, String> jndiProperties = new Hashtable<>();
+            jndiProperties.put(Context.INITIAL_CONTEXT_FACTORY, Factory.class.getName());
+
+            final Context context = new InitialContext(jndiProperties);
+
+            return (ShippingServiceRemote) context.lookup(NAME);
+        } catch (NamingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Stands in for {@code WildFlyInitialContextFactory}, with contexts that only support
+     * {@code lookup} of the shipping service name and {@code close}.
+     */
+    public static final class Factory implements InitialContextFactory {
+
+        @Override
+        public Context getInitialContext(Hashtable<?, ?> environment) {
+            return (Context) Proxy.newProxyInstance(Factory.class.getClassLoader(), new Class<?>[] {Context.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "lookup":
+                                if (NAME.equals(String.valueOf(args[0]))) {
+                                    return bound;
+                                }
+                                throw new NamingException("Not bound: " + args[0]);
+                            case "close":
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+
+    private PerCallLookupShipping() {
+    }
+}
@@ -0,0 +1,92 @@
+package com.redhat.coolstore.service;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.redhat.coolstore.model.Product;
+import com.redhat.coolstore.model.ShoppingCart;
+
+/**
+ * Cart pricing: the full {@link ShoppingCartService#priceShoppingCart} pass and its promotion
+ * and shipping steps on their own, for carts of {@code cartSize} lines against
+ * {@code promotions} active promotion rules.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+    @Param({"1", "10", "100"})
+    int cartSize;
+
+    @Param({"0", "10", "1000"})
+    int promotions;
+
+    private ShoppingCart cart;
+    private PromoService promoService;
+    private ShippingService shippingService;
+    private ShippingServiceProxy shippingProxy;
+    private ShoppingCartService shoppingCartService;
+
+    @Setup
+    public void setUp() {
+        Map<String, Product> products = PricingFixtures.products(cartSize);
+        cart = PricingFixtures.cart(products);
+        promoService = PricingFixtures.promoService(products, promotions);
+        shippingService = PricingFixtures.shippingService();
+        shippingProxy = PricingFixtures.shippingProxy(shippingService);
+        PerCallLookupShipping.bound = shippingService;
+        shoppingCartService = PricingFixtures.shoppingCartService(products, promoService, shippingProxy);
+        shoppingCartService.priceShoppingCart(cart);
+    }
+
+    @Benchmark
+    public double priceShoppingCart() {
+        shoppingCartService.priceShoppingCart(cart);
+        return cart.getCartTotal();
+    }
+
+    @Benchmark
+    public ShoppingCart applyCartItemPromotions() {
+        promoService.applyCartItemPromotions(cart);
+        return cart;
+    }
+
+    @Benchmark
+    public double calculateShipping() {
+        return shippingService.calculateShipping(cart) + shippingService.calculateShippingInsurance(cart);
+    }
+
+    /**
+     * The same as {@link #calculateShipping()} through the cached {@link ShippingServiceProxy},
+     * to show what the proxy adds once its delegate is resolved.
+     */
+    @Benchmark
+    public double calculateShippingViaProxy() {
+        return shippingProxy.calculateShipping(cart) + shippingProxy.calculateShippingInsurance(cart);
+    }
+
+    /**
+     * The same as {@link #calculateShipping()} with a JNDI lookup before each call, as cart
+     * pricing did before the proxy, as the baseline for {@link #calculateShippingViaProxy()}.
+     */
+    @Benchmark
+    public double calculateShippingPerCallLookup() {
+        return PerCallLookupShipping.calculateShipping(cart) + PerCallLookupShipping.calculateShippingInsurance(cart);
+    }
+}
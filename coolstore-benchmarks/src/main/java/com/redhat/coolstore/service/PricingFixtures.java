@@ -0,0 +1,146 @@
+package com.redhat.coolstore.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.redhat.coolstore.model.Product;
+import com.redhat.coolstore.model.Promotion;
+import com.redhat.coolstore.model.ShoppingCart;
+import com.redhat.coolstore.model.ShoppingCartItem;
+
+/**
+ * Builds the pricing services outside the container, wired the way CDI would wire them but
+ * with the catalog and the shipping lookup replaced by in-memory stand-ins.
+ */
+final class PricingFixtures {
+
+    static Map<String, Product> products(int count) {
+        Map<String, Product> products = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Product product = new Product();
+            product.setItemId(String.valueOf(100000 + i));
+            product.setName("Product " + i);
+            product.setDesc("Benchmark product " + i);
+            product.setPrice(5.0 + (i % 40) * 1.25);
+            product.setLocation("Raleigh");
+            product.setQuantity(1000);
+            product.setLink("http://maps.google.com/?q=Raleigh");
+            products.put(product.getItemId(), product);
+        }
+        return products;
+    }
+
+    static ShoppingCart cart(Map<String, Product> products) {
+        ShoppingCart cart = new ShoppingCart();
+        int quantity = 1;
+        for (Product product : products.values()) {
+            ShoppingCartItem item = new ShoppingCartItem();
+            item.setProduct(product);
+            item.setPrice(product.getPrice());
+            item.setQuantity(quantity++ % 5 + 1);
+            cart.addShoppingCartItem(item);
+        }
+        return cart;
+    }
+
+    /**
+     * Promotions for {@code count} items; every other one matches a product in the cart and
+     * a third of them are outside their validity window or need a larger quantity.
+     */
+    static PromoService promoService(Map<String, Product> products, int count) {
+        String[] cartItems = products.keySet().toArray(new String[0]);
+        long now = System.currentTimeMillis();
+        Set<Promotion> promotions = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            String itemId = i % 2 == 0 && cartItems.length > 0
+                    ? cartItems[(i / 2) % cartItems.length]
+                    : String.valueOf(900000 + i);
+            switch (i % 3) {
+                case 0:
+                    promotions.add(new Promotion(itemId, 0.1 + (i % 5) * 0.05));
+                    break;
+                case 1:
+                    promotions.add(new Promotion(itemId, 0.2, 3, null, null));
+                    break;
+                default:
+                    promotions.add(new Promotion(itemId, 0.3, 1,
+                            new Date(now - TimeUnit.DAYS.toMillis(30)), new Date(now - TimeUnit.DAYS.toMillis(1))));
+            }
+        }
+        PromoService promoService = new PromoService();
+        promoService.setPromotions(promotions);
+        return promoService;
+    }
+
+    static ShippingService shippingService() {
+        ShippingRateEngine engine = new ShippingRateEngine();
+        engine.log = Logger.getLogger(ShippingRateEngine.class.getName());
+        Properties rates = new Properties();
+        try (InputStream in = ShippingRateEngine.class.getResourceAsStream("/shipping-rates.properties")) {
+            rates.load(in);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        engine.setRates(ShippingRateTable.fromProperties(rates));
+        ShippingService shippingService = new ShippingService();
+        shippingService.rateEngine = engine;
+        return shippingService;
+    }
+
+    /**
+     * A proxy whose delegate is already resolved to the given service, as it is after the
+     * first call in the container.
+     */
+    static ShippingServiceProxy shippingProxy(ShippingServiceRemote delegate) {
+        ShippingServiceProxy proxy = new ShippingServiceProxy();
+        proxy.log = Logger.getLogger(ShippingServiceProxy.class.getName());
+        try {
+            Field field = ShippingServiceProxy.class.getDeclaredField("delegate");
+            field.setAccessible(true);
+            field.set(proxy, delegate);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        return proxy;
+    }
+
+    static ShoppingCartService shoppingCartService(Map<String, Product> products, PromoService promoService,
+                                                   ShippingServiceProxy shippingProxy) {
+        ShoppingCartService service = new ShoppingCartService();
+        service.log = Logger.getLogger(ShoppingCartService.class.getName());
+        service.productServices = new ProductService() {
+            @Override
+            public Product getProductByItemId(String itemId) {
+                return products.get(itemId);
+            }
+
+            @Override
+            public Map<String, Product> getProductsByItemIds(Collection<String> itemIds) {
+                Map<String, Product> found = new HashMap<>(itemIds.size() * 2);
+                for (String itemId : itemIds) {
+                    Product product = products.get(itemId);
+                    if (product != null) {
+                        found.put(itemId, product);
+                    }
+                }
+                return found;
+            }
+        };
+        service.ps = promoService;
+        service.shippingService = shippingProxy;
+        return service;
+    }
+
+    private PricingFixtures() {
+    }
+}
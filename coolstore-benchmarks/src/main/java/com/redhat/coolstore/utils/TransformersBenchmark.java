@@ -0,0 +1,112 @@
+package com.redhat.coolstore.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.redhat.coolstore.model.CatalogItemEntity;
+import com.redhat.coolstore.model.InventoryEntity;
+import com.redhat.coolstore.model.Order;
+import com.redhat.coolstore.model.Product;
+import com.redhat.coolstore.model.ShoppingCart;
+import com.redhat.coolstore.model.ShoppingCartItem;
+
+/**
+ * The catalog and order conversions in {@link Transformers}. The {@code tree*} benchmarks run
+ * the same conversions through the {@code javax.json} object model the streaming code
+ * replaced, and the {@code *Bytes} ones the binary order format used on the order topic.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformersBenchmark {
+
+    @Param({"1", "10", "100"})
+    int cartSize;
+
+    private CatalogItemEntity catalogItem;
+    private ShoppingCart cart;
+    private String orderJson;
+    private byte[] orderBytes;
+
+    @Setup
+    public void setUp() {
+        InventoryEntity inventory = new InventoryEntity();
+        inventory.setItemId("329299");
+        inventory.setLocation("Raleigh");
+        inventory.setQuantity(736);
+        inventory.setLink("http://maps.google.com/?q=Raleigh");
+        catalogItem = new CatalogItemEntity();
+        catalogItem.setItemId("329299");
+        catalogItem.setName("Red Fedora");
+        catalogItem.setDesc("Official Red Hat Fedora");
+        catalogItem.setPrice(34.99);
+        catalogItem.setInventory(inventory);
+
+        cart = new ShoppingCart();
+        for (int i = 0; i < cartSize; i++) {
+            Product product = new Product();
+            product.setItemId(String.valueOf(100000 + i));
+            product.setPrice(5.0 + (i % 40) * 1.25);
+            ShoppingCartItem item = new ShoppingCartItem();
+            item.setProduct(product);
+            item.setPrice(product.getPrice());
+            item.setQuantity(i % 5 + 1);
+            cart.addShoppingCartItem(item);
+        }
+        cart.setCartItemTotal(cart.getShoppingCartItemList().stream().mapToDouble(i -> i.getQuantity() * i.getPrice()).sum());
+        cart.setShippingTotal(4.99);
+        cart.setCartTotal(cart.getCartItemTotal() + cart.getShippingTotal());
+
+        orderJson = Transformers.shoppingCartToJson(cart);
+        orderBytes = Transformers.shoppingCartToBytes(cart);
+    }
+
+    @Benchmark
+    public Product toProduct() {
+        return Transformers.toProduct(catalogItem);
+    }
+
+    @Benchmark
+    public String shoppingCartToJson() {
+        return Transformers.shoppingCartToJson(cart);
+    }
+
+    @Benchmark
+    public Order jsonToOrder() {
+        return Transformers.jsonToOrder(orderJson);
+    }
+
+    @Benchmark
+    public String treeShoppingCartToJson() {
+        return TreeModelTransformers.shoppingCartToJson(cart);
+    }
+
+    @Benchmark
+    public Order treeJsonToOrder() {
+        return TreeModelTransformers.jsonToOrder(orderJson);
+    }
+
+    @Benchmark
+    public byte[] shoppingCartToBytes() {
+        return Transformers.shoppingCartToBytes(cart);
+    }
+
+    @Benchmark
+    public Order bytesToOrder() {
+        return Transformers.bytesToOrder(orderBytes);
+    }
+}
@@ -0,0 +1,77 @@
+package com.redhat.coolstore.utils;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonWriter;
+
+import com.redhat.coolstore.model.Order;
+import com.redhat.coolstore.model.OrderItem;
+import com.redhat.coolstore.model.ShoppingCart;
+
+/**
+ * The order conversions as they were before {@link Transformers} moved to the streaming
+ * parser and generator, building a full {@code javax.json} object tree on both sides. Kept
+ * only as the baseline for {@link TransformersBenchmark}.
+ */
+final class TreeModelTransformers {
+
+    static String shoppingCartToJson(ShoppingCart cart) {
+        JsonArrayBuilder cartItems = Json.createArrayBuilder();
+        cart.getShoppingCartItemList().forEach(item -> {
+            cartItems.add(Json.createObjectBuilder()
+                .add("productSku", item.getProduct().getItemId())
+                .add("quantity", item.getQuantity())
+            );
+        });
+
+        JsonObject jsonObject = Json.createObjectBuilder()
+            .add("orderValue", Double.valueOf(cart.getCartTotal()))
+            .add("customerName", "Sven Karlsson")
+            .add("customerEmail", "sven@gmail.com")
+            .add("retailPrice", cart.getShoppingCartItemList().stream().mapToDouble(i -> i.getQuantity() * i.getPrice()).sum())
+            .add("discount", Double.valueOf(cart.getCartItemPromoSavings()))
+            .add("shippingFee", Double.valueOf(cart.getShippingTotal()))
+            .add("shippingDiscount", Double.valueOf(cart.getShippingPromoSavings()))
+            .add("items", cartItems)
+            .build();
+        StringWriter w = new StringWriter();
+        try (JsonWriter writer = Json.createWriter(w)) {
+            writer.write(jsonObject);
+        }
+        return w.toString();
+    }
+
+    static Order jsonToOrder(String json) {
+        JsonReader jsonReader = Json.createReader(new StringReader(json));
+        JsonObject rootObject = jsonReader.readObject();
+        Order order = new Order();
+        order.setCustomerName(rootObject.getString("customerName"));
+        order.setCustomerEmail(rootObject.getString("customerEmail"));
+        order.setOrderValue(rootObject.getJsonNumber("orderValue").doubleValue());
+        order.setRetailPrice(rootObject.getJsonNumber("retailPrice").doubleValue());
+        order.setDiscount(rootObject.getJsonNumber("discount").doubleValue());
+        order.setShippingFee(rootObject.getJsonNumber("shippingFee").doubleValue());
+        order.setShippingDiscount(rootObject.getJsonNumber("shippingDiscount").doubleValue());
+        JsonArray jsonItems = rootObject.getJsonArray("items");
+        List<OrderItem> items = new ArrayList<OrderItem>(jsonItems.size());
+        for (JsonObject jsonItem : jsonItems.getValuesAs(JsonObject.class)) {
+            OrderItem oi = new OrderItem();
+            oi.setProductId(jsonItem.getString("productSku"));
+            oi.setQuantity(jsonItem.getInt("quantity"));
+            items.add(oi);
+        }
+        order.setItemList(items);
+        return order;
+    }
+
+    private TreeModelTransformers() {
+    }
+}
@@ -0,0 +1,41 @@
+package com.redhat.coolstore.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A cart after a batch of {@link CartOperation}s, with one result per operation in the
+ * order they were given.
+ */
+public class CartBatchResult implements Serializable {
+
+	private static final long serialVersionUID = 1969427340052513720L;
+
+	private ShoppingCart cart;
+
+	private List<CartOperationResult> results;
+
+	public CartBatchResult() {
+	}
+
+	public CartBatchResult(ShoppingCart cart, List<CartOperationResult> results) {
+		this.cart = cart;
+		this.results = results;
+	}
+
+	public ShoppingCart getCart() {
+		return cart;
+	}
+
+	public void setCart(ShoppingCart cart) {
+		this.cart = cart;
+	}
+
+	public List<CartOperationResult> getResults() {
+		return results;
+	}
+
+	public void setResults(List<CartOperationResult> results) {
+		this.results = results;
+	}
+}
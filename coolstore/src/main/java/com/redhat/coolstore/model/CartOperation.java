@@ -0,0 +1,62 @@
+package com.redhat.coolstore.model;
+
+import java.io.Serializable;
+
+/**
+ * One change in a batch applied to a cart: {@code add} or {@code remove} a quantity of an
+ * item, or {@code set} its line to an exact quantity, where 0 drops the line.
+ */
+public class CartOperation implements Serializable {
+
+	private static final long serialVersionUID = 8805216719634407913L;
+
+	public static final String ADD = "add";
+
+	public static final String REMOVE = "remove";
+
+	public static final String SET = "set";
+
+	private String op;
+
+	private String itemId;
+
+	private int quantity;
+
+	public CartOperation() {
+	}
+
+	public CartOperation(String op, String itemId, int quantity) {
+		this.op = op;
+		this.itemId = itemId;
+		this.quantity = quantity;
+	}
+
+	public String getOp() {
+		return op;
+	}
+
+	public void setOp(String op) {
+		this.op = op;
+	}
+
+	public String getItemId() {
+		return itemId;
+	}
+
+	public void setItemId(String itemId) {
+		this.itemId = itemId;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public void setQuantity(int quantity) {
+		this.quantity = quantity;
+	}
+
+	@Override
+	public String toString() {
+		return "CartOperation [op=" + op + ", itemId=" + itemId + ", quantity=" + quantity + "]";
+	}
+}
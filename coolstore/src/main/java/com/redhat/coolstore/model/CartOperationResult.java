@@ -0,0 +1,72 @@
+package com.redhat.coolstore.model;
+
+import java.io.Serializable;
+
+/**
+ * Outcome of one {@link CartOperation}: {@code APPLIED}, {@code UNKNOWN_PRODUCT} when the
+ * item is not in the catalog, {@code NOT_IN_CART} when removing an item the cart does not
+ * hold, or {@code INVALID} for an unknown operation or a negative quantity. {@code quantity}
+ * is the item's quantity in the cart after the operation.
+ */
+public class CartOperationResult implements Serializable {
+
+	private static final long serialVersionUID = -4150716300178223367L;
+
+	public static final String APPLIED = "APPLIED";
+
+	public static final String UNKNOWN_PRODUCT = "UNKNOWN_PRODUCT";
+
+	public static final String NOT_IN_CART = "NOT_IN_CART";
+
+	public static final String INVALID = "INVALID";
+
+	private String op;
+
+	private String itemId;
+
+	private String status;
+
+	private int quantity;
+
+	public CartOperationResult() {
+	}
+
+	public CartOperationResult(CartOperation operation, String status, int quantity) {
+		this.op = operation.getOp();
+		this.itemId = operation.getItemId();
+		this.status = status;
+		this.quantity = quantity;
+	}
+
+	public String getOp() {
+		return op;
+	}
+
+	public void setOp(String op) {
+		this.op = op;
+	}
+
+	public String getItemId() {
+		return itemId;
+	}
+
+	public void setItemId(String itemId) {
+		this.itemId = itemId;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public void setQuantity(int quantity) {
+		this.quantity = quantity;
+	}
+}
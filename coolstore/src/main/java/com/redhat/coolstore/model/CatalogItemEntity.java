@@ -3,11 +3,18 @@ package com.redhat.coolstore.model;
 import javax.persistence.*;
 import java.io.Serializable;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CatalogItemEntity.CACHE_REGION)
 @Table(name = "PRODUCT_CATALOG", uniqueConstraints = @UniqueConstraint(columnNames = "itemId"))
 public class CatalogItemEntity implements Serializable {
 
 	private static final long serialVersionUID = -7304814269819778382L;
+
+	public static final String CACHE_REGION = "coolstore.catalog";
 	
 	@Id
 	private String itemId;
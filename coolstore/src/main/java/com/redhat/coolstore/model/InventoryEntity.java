@@ -2,6 +2,7 @@ package com.redhat.coolstore.model;
 
 import java.io.Serializable;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
@@ -9,13 +10,20 @@ import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 @Entity
 @XmlRootElement
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = InventoryEntity.CACHE_REGION)
 @Table(name = "INVENTORY", uniqueConstraints = @UniqueConstraint(columnNames = "itemId"))
 public class InventoryEntity implements Serializable {
 
 	private static final long serialVersionUID = 7526472295622776147L; 
 
+	public static final String CACHE_REGION = "coolstore.inventory";
+
     @Id
     private String itemId;
 
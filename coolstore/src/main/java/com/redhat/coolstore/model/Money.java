@@ -0,0 +1,67 @@
+package com.redhat.coolstore.model;
+
+import javax.json.stream.JsonGenerator;
+
+/**
+ * Arithmetic on amounts held as a {@code long} number of cents.
+ *
+ * Cart pricing keeps every amount in cents so totals are exact however many lines are
+ * added up. The rounding rules are:
+ * <ul>
+ * <li>a dollar amount from the catalog or the REST layer is rounded to the nearest cent,
+ * halves away from zero ({@link #ofDollars});</li>
+ * <li>a percentage of an amount is taken in basis points and rounded the same way
+ * ({@link #percentOf}), so a discount and the discounted price always add up to the
+ * original price;</li>
+ * <li>sums and products never round, and fail rather than overflow.</li>
+ * </ul>
+ * Amounts are converted back to dollars only for the REST and order representations,
+ * where {@link #toDollars} gives the same number the {@code double} fields used to hold.
+ */
+public final class Money {
+
+    public static final long BASIS_POINTS = 10_000L;
+
+    private static final long MAX_EXACT_CENTS = 1L << 53;
+
+    public static long ofDollars(double amount) {
+        double cents = amount * 100;
+        if (Double.isNaN(cents) || Math.abs(cents) >= MAX_EXACT_CENTS) {
+            throw new ArithmeticException("Amount out of range: " + amount);
+        }
+        // amount * 100 lands within an ulp of a whole number of cents for any amount with
+        // two decimals, so rounding here is exact for every price the catalog can hold
+        return cents < 0 ? -Math.round(-cents) : Math.round(cents);
+    }
+
+    public static double toDollars(long cents) {
+        return cents / 100.0;
+    }
+
+    public static long times(long cents, int quantity) {
+        return Math.multiplyExact(cents, (long) quantity);
+    }
+
+    /**
+     * Converts a fraction such as a promotion's {@code 0.25} to basis points.
+     */
+    public static long basisPoints(double fraction) {
+        return Math.round(fraction * BASIS_POINTS);
+    }
+
+    public static long percentOf(long cents, long basisPoints) {
+        long scaled = Math.multiplyExact(cents, basisPoints);
+        long half = BASIS_POINTS / 2;
+        return scaled < 0 ? -((-scaled + half) / BASIS_POINTS) : (scaled + half) / BASIS_POINTS;
+    }
+
+    /**
+     * Writes an amount as a JSON number in dollars, as the REST layer has always shown it.
+     */
+    public static void write(JsonGenerator generator, String name, long cents) {
+        generator.write(name, toDollars(cents));
+    }
+
+    private Money() {
+    }
+}
@@ -24,6 +24,9 @@ public class Order implements Serializable {
 	@GeneratedValue
 	private long orderId;
 
+	@Column(unique = true, length = 64)
+	private String orderKey;
+
 	private String customerName;
 
 	private String customerEmail;
@@ -55,6 +58,14 @@ public class Order implements Serializable {
 		this.orderId = orderId;
 	}
 
+	public String getOrderKey() {
+		return orderKey;
+	}
+
+	public void setOrderKey(String orderKey) {
+		this.orderKey = orderKey;
+	}
+
 	public String getCustomerName() {
 		return customerName;
 	}
@@ -122,6 +133,7 @@ public class Order implements Serializable {
 	@Override
 	public String toString() {
 		return "Order [orderId=" + orderId
+				+ ", orderKey=" + orderKey
 				+ ", customerName=" + customerName
 				+ ", customerEmail=" + customerEmail
 				+ ", orderValue=" + orderValue
@@ -0,0 +1,143 @@
+package com.redhat.coolstore.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only snapshot of a received order, shared by every order event handler.
+ */
+public final class OrderEvent {
+
+	private final String orderKey;
+	private final String customerName;
+	private final String customerEmail;
+	private final double orderValue;
+	private final double retailPrice;
+	private final double discount;
+	private final double shippingFee;
+	private final double shippingDiscount;
+	private final List<Line> lines;
+	private final boolean inventoryReserved;
+
+	private OrderEvent(Order order, boolean inventoryReserved) {
+		this.orderKey = order.getOrderKey();
+		this.customerName = order.getCustomerName();
+		this.customerEmail = order.getCustomerEmail();
+		this.orderValue = order.getOrderValue();
+		this.retailPrice = order.getRetailPrice();
+		this.discount = order.getDiscount();
+		this.shippingFee = order.getShippingFee();
+		this.shippingDiscount = order.getShippingDiscount();
+		List<Line> lines = new ArrayList<Line>(order.getItemList().size());
+		for (OrderItem item : order.getItemList()) {
+			lines.add(new Line(item.getProductId(), item.getQuantity()));
+		}
+		this.lines = Collections.unmodifiableList(lines);
+		this.inventoryReserved = inventoryReserved;
+	}
+
+	public static OrderEvent of(Order order) {
+		return new OrderEvent(order, false);
+	}
+
+	/**
+	 * @param inventoryReserved whether the order's stock was already taken out at checkout
+	 */
+	public static OrderEvent of(Order order, boolean inventoryReserved) {
+		return new OrderEvent(order, inventoryReserved);
+	}
+
+	/**
+	 * Creates a new, unsaved {@link Order} entity carrying this event's data.
+	 */
+	public Order toOrder() {
+		Order order = new Order();
+		order.setOrderKey(orderKey);
+		order.setCustomerName(customerName);
+		order.setCustomerEmail(customerEmail);
+		order.setOrderValue(orderValue);
+		order.setRetailPrice(retailPrice);
+		order.setDiscount(discount);
+		order.setShippingFee(shippingFee);
+		order.setShippingDiscount(shippingDiscount);
+		List<OrderItem> items = new ArrayList<OrderItem>(lines.size());
+		for (Line line : lines) {
+			OrderItem item = new OrderItem();
+			item.setProductId(line.getProductId());
+			item.setQuantity(line.getQuantity());
+			items.add(item);
+		}
+		order.setItemList(items);
+		return order;
+	}
+
+	public String getOrderKey() {
+		return orderKey;
+	}
+
+	public String getCustomerName() {
+		return customerName;
+	}
+
+	public String getCustomerEmail() {
+		return customerEmail;
+	}
+
+	public double getOrderValue() {
+		return orderValue;
+	}
+
+	public double getRetailPrice() {
+		return retailPrice;
+	}
+
+	public double getDiscount() {
+		return discount;
+	}
+
+	public double getShippingFee() {
+		return shippingFee;
+	}
+
+	public double getShippingDiscount() {
+		return shippingDiscount;
+	}
+
+	public List<Line> getLines() {
+		return lines;
+	}
+
+	public boolean isInventoryReserved() {
+		return inventoryReserved;
+	}
+
+	@Override
+	public String toString() {
+		return "OrderEvent [orderKey=" + orderKey + ", orderValue=" + orderValue + ", lines=" + lines + "]";
+	}
+
+	public static final class Line {
+
+		private final String productId;
+		private final int quantity;
+
+		Line(String productId, int quantity) {
+			this.productId = productId;
+			this.quantity = quantity;
+		}
+
+		public String getProductId() {
+			return productId;
+		}
+
+		public int getQuantity() {
+			return quantity;
+		}
+
+		@Override
+		public String toString() {
+			return "Line [productId=" + productId + ", quantity=" + quantity + "]";
+		}
+	}
+}
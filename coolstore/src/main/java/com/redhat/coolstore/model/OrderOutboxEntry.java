@@ -0,0 +1,153 @@
+package com.redhat.coolstore.model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * An order message accepted at checkout and waiting to be, or already, published to the
+ * orders topic. The payload is the encoded message body in the given format.
+ */
+@Entity
+@Table(name = "ORDER_OUTBOX")
+public class OrderOutboxEntry implements Serializable {
+
+	private static final long serialVersionUID = 4127781652839103761L;
+
+	public static final String PENDING = "PENDING";
+
+	public static final String PUBLISHED = "PUBLISHED";
+
+	public static final String FAILED = "FAILED";
+
+	// given up on, but the order may have been stored anyway; its stock is left as it is
+	public static final String RECONCILE = "RECONCILE";
+
+	@Id
+	@GeneratedValue
+	private long id;
+
+	@Column(unique = true, nullable = false, length = 64)
+	private String orderKey;
+
+	@Column(nullable = false, length = 16)
+	private String format;
+
+	@Column(nullable = false)
+	private byte[] payload;
+
+	@Column(nullable = false, length = 16)
+	private String status;
+
+	private int attempts;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(nullable = false)
+	private Date createdAt;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date publishedAt;
+
+	private String lastError;
+
+	@Column(length = 64)
+	private String claimedBy;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date claimedUntil;
+
+	public OrderOutboxEntry() {
+	}
+
+	public OrderOutboxEntry(String orderKey, String format, byte[] payload) {
+		this.orderKey = orderKey;
+		this.format = format;
+		this.payload = payload;
+		this.status = PENDING;
+		this.createdAt = new Date();
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getOrderKey() {
+		return orderKey;
+	}
+
+	public String getFormat() {
+		return format;
+	}
+
+	public byte[] getPayload() {
+		return payload;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	public Date getPublishedAt() {
+		return publishedAt;
+	}
+
+	public void setPublishedAt(Date publishedAt) {
+		this.publishedAt = publishedAt;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+
+	/**
+	 * The relay that is currently publishing this entry, until {@link #getClaimedUntil()}.
+	 */
+	public String getClaimedBy() {
+		return claimedBy;
+	}
+
+	public void setClaimedBy(String claimedBy) {
+		this.claimedBy = claimedBy;
+	}
+
+	public Date getClaimedUntil() {
+		return claimedUntil;
+	}
+
+	public void setClaimedUntil(Date claimedUntil) {
+		this.claimedUntil = claimedUntil;
+	}
+
+	@Override
+	public String toString() {
+		return "OrderOutboxEntry [id=" + id + ", orderKey=" + orderKey + ", status=" + status
+				+ ", attempts=" + attempts + "]";
+	}
+}
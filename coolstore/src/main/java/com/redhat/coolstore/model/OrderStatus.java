@@ -0,0 +1,76 @@
+package com.redhat.coolstore.model;
+
+import java.io.Serializable;
+
+/**
+ * Where an order accepted at checkout currently is: {@code PENDING} in the outbox,
+ * {@code PUBLISHED} to the orders topic, {@code COMPLETED} once the order has been stored,
+ * or {@code FAILED} if the outbox gave up publishing it.
+ */
+public class OrderStatus implements Serializable {
+
+	private static final long serialVersionUID = -2281049537268851432L;
+
+	public static final String COMPLETED = "COMPLETED";
+
+	private String orderKey;
+
+	private String status;
+
+	private Long orderId;
+
+	private int attempts;
+
+	private String lastError;
+
+	public OrderStatus() {
+	}
+
+	public OrderStatus(String orderKey, String status, Long orderId, int attempts, String lastError) {
+		this.orderKey = orderKey;
+		this.status = status;
+		this.orderId = orderId;
+		this.attempts = attempts;
+		this.lastError = lastError;
+	}
+
+	public String getOrderKey() {
+		return orderKey;
+	}
+
+	public void setOrderKey(String orderKey) {
+		this.orderKey = orderKey;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public Long getOrderId() {
+		return orderId;
+	}
+
+	public void setOrderId(Long orderId) {
+		this.orderId = orderId;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+}
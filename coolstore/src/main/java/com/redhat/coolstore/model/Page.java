@@ -0,0 +1,41 @@
+package com.redhat.coolstore.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. {@code next} is the value to pass as
+ * {@code after} to fetch the following page, or {@code null} on the last page.
+ */
+public class Page<T> implements Serializable {
+
+	private static final long serialVersionUID = 3590281738456105716L;
+
+	private List<T> items;
+
+	private String next;
+
+	public Page() {
+	}
+
+	public Page(List<T> items, String next) {
+		this.items = items;
+		this.next = next;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	public void setItems(List<T> items) {
+		this.items = items;
+	}
+
+	public String getNext() {
+		return next;
+	}
+
+	public void setNext(String next) {
+		this.next = next;
+	}
+}
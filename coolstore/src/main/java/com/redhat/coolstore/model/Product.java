@@ -20,15 +20,34 @@ public class Product implements Serializable {
 
     private String link;
 
+    // set once a product is shared through the catalog cache; copies made by
+    // deserialization are writable again
+    private transient boolean frozen;
 
     public Product() {
     }
 
+    /**
+     * Makes this product read-only, so that a product shared between callers cannot be
+     * changed by one of them. Returns this product.
+     */
+    public Product freeze() {
+        frozen = true;
+        return this;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Product " + itemId + " is shared and read-only");
+        }
+    }
+
     public String getItemId() {
         return itemId;
     }
 
     public void setItemId(String itemId) {
+        checkNotFrozen();
         this.itemId = itemId;
     }
 
@@ -37,6 +56,7 @@ public class Product implements Serializable {
     }
 
     public void setName(String name) {
+        checkNotFrozen();
         this.name = name;
     }
 
@@ -45,6 +65,7 @@ public class Product implements Serializable {
     }
 
     public void setDesc(String desc) {
+        checkNotFrozen();
         this.desc = desc;
     }
 
@@ -53,6 +74,7 @@ public class Product implements Serializable {
     }
 
     public void setPrice(double price) {
+        checkNotFrozen();
         this.price = price;
     }
 
@@ -61,6 +83,7 @@ public class Product implements Serializable {
     }
 
     public void setLocation(String location) {
+        checkNotFrozen();
         this.location = location;
     }
 
@@ -69,6 +92,7 @@ public class Product implements Serializable {
     }
 
     public void setQuantity(int quantity) {
+        checkNotFrozen();
         this.quantity = quantity;
     }
 
@@ -77,6 +101,7 @@ public class Product implements Serializable {
     }
 
     public void setLink(String link) {
+        checkNotFrozen();
         this.link = link;
     }
 }
@@ -1,11 +1,19 @@
 package com.redhat.coolstore.model;
 
+import java.util.Date;
+
 public class Promotion {
 
 	private String itemId;
 	
 	private double percentOff;
 
+	private int minQuantity = 1;
+
+	private Date validFrom;
+
+	private Date validUntil;
+
 	public Promotion() {
 		
 	}
@@ -16,6 +24,13 @@ public class Promotion {
 		this.percentOff = percentOff;
 	}
 
+	public Promotion(String itemId, double percentOff, int minQuantity, Date validFrom, Date validUntil) {
+		this(itemId, percentOff);
+		this.minQuantity = minQuantity;
+		this.validFrom = validFrom;
+		this.validUntil = validUntil;
+	}
+
 	public String getItemId() {
 		return itemId;
 	}
@@ -32,10 +47,35 @@ public class Promotion {
 		this.percentOff = percentOff;
 	}
 
+	public int getMinQuantity() {
+		return minQuantity;
+	}
+
+	public void setMinQuantity(int minQuantity) {
+		this.minQuantity = minQuantity;
+	}
+
+	public Date getValidFrom() {
+		return validFrom;
+	}
+
+	public void setValidFrom(Date validFrom) {
+		this.validFrom = validFrom;
+	}
+
+	public Date getValidUntil() {
+		return validUntil;
+	}
+
+	public void setValidUntil(Date validUntil) {
+		this.validUntil = validUntil;
+	}
+
 	@Override
 	public String toString() {
 		return "Promotion [itemId=" + itemId + ", percentOff=" + percentOff
-				+ "]";
+				+ ", minQuantity=" + minQuantity + ", validFrom=" + validFrom
+				+ ", validUntil=" + validUntil + "]";
 	}
 	
 }
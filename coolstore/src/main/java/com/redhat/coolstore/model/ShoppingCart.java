@@ -1,25 +1,30 @@
 package com.redhat.coolstore.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.enterprise.context.Dependent;
 
 @Dependent
 public class ShoppingCart implements Serializable {
 
+	// unchanged from when amounts were doubles, so carts serialized then still read; see readObject
 	private static final long serialVersionUID = -1108043957592113528L;
 
-	private double cartItemTotal;
+	private long cartItemTotalCents;
 
-	private double cartItemPromoSavings;
+	private long cartItemPromoSavingsCents;
 	
-	private double shippingTotal;
+	private long shippingTotalCents;
 	
-	private double shippingPromoSavings;
+	private long shippingPromoSavingsCents;
 	
-	private double cartTotal;
+	private long cartTotalCents;
 			
 	private List<ShoppingCartItem> shoppingCartItemList = new ArrayList<ShoppingCartItem>();
 
@@ -27,6 +32,30 @@ public class ShoppingCart implements Serializable {
 		
 	}
 	
+	/**
+	 * Reads carts written before amounts were kept in cents as well as current ones.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		cartItemTotalCents = readCents(fields, "cartItemTotalCents", "cartItemTotal");
+		cartItemPromoSavingsCents = readCents(fields, "cartItemPromoSavingsCents", "cartItemPromoSavings");
+		shippingTotalCents = readCents(fields, "shippingTotalCents", "shippingTotal");
+		shippingPromoSavingsCents = readCents(fields, "shippingPromoSavingsCents", "shippingPromoSavings");
+		cartTotalCents = readCents(fields, "cartTotalCents", "cartTotal");
+		shoppingCartItemList = (List<ShoppingCartItem>) fields.get("shoppingCartItemList", null);
+		if (shoppingCartItemList == null) {
+			shoppingCartItemList = new ArrayList<ShoppingCartItem>();
+		}
+	}
+
+	static long readCents(ObjectInputStream.GetField fields, String centsField, String dollarsField) throws IOException {
+		if (!fields.defaulted(centsField)) {
+			return fields.get(centsField, 0L);
+		}
+		return Money.ofDollars(fields.get(dollarsField, 0.0));
+	}
+
 	public List<ShoppingCartItem> getShoppingCartItemList() {
 		return shoppingCartItemList;
 	}
@@ -63,53 +92,136 @@ public class ShoppingCart implements Serializable {
 		
 	}
 
+	public ShoppingCartItem getShoppingCartItem(String itemId) {
+
+		for (ShoppingCartItem sci : shoppingCartItemList) {
+
+			if (sci.getProduct() != null && sci.getProduct().getItemId().equals(itemId)) {
+
+				return sci;
+
+			}
+
+		}
+
+		return null;
+
+	}
+
+	/**
+	 * Folds lines for the same product into one, summing their quantities.
+	 */
+	public void mergeDuplicateItems() {
+
+		Map<String, ShoppingCartItem> merged = new LinkedHashMap<String, ShoppingCartItem>();
+
+		for (ShoppingCartItem sci : shoppingCartItemList) {
+
+			ShoppingCartItem existing = merged.get(sci.getProduct().getItemId());
+
+			if (existing != null) {
+
+				existing.setQuantity(existing.getQuantity() + sci.getQuantity());
+
+			} else {
+
+				merged.put(sci.getProduct().getItemId(), sci);
+
+			}
+
+		}
+
+		shoppingCartItemList = new ArrayList<ShoppingCartItem>(merged.values());
+
+	}
+
 	public double getCartItemTotal() {
-		return cartItemTotal;
+		return Money.toDollars(cartItemTotalCents);
 	}
 
 	public void setCartItemTotal(double cartItemTotal) {
-		this.cartItemTotal = cartItemTotal;
+		this.cartItemTotalCents = Money.ofDollars(cartItemTotal);
+	}
+
+	public long getCartItemTotalCents() {
+		return cartItemTotalCents;
+	}
+
+	public void setCartItemTotalCents(long cartItemTotalCents) {
+		this.cartItemTotalCents = cartItemTotalCents;
 	}
 
 	public double getShippingTotal() {
-		return shippingTotal;
+		return Money.toDollars(shippingTotalCents);
 	}
 
 	public void setShippingTotal(double shippingTotal) {
-		this.shippingTotal = shippingTotal;
+		this.shippingTotalCents = Money.ofDollars(shippingTotal);
+	}
+
+	public long getShippingTotalCents() {
+		return shippingTotalCents;
+	}
+
+	public void setShippingTotalCents(long shippingTotalCents) {
+		this.shippingTotalCents = shippingTotalCents;
 	}
 
 	public double getCartTotal() {
-		return cartTotal;
+		return Money.toDollars(cartTotalCents);
 	}
 
 	public void setCartTotal(double cartTotal) {
-		this.cartTotal = cartTotal;
+		this.cartTotalCents = Money.ofDollars(cartTotal);
+	}
+
+	public long getCartTotalCents() {
+		return cartTotalCents;
+	}
+
+	public void setCartTotalCents(long cartTotalCents) {
+		this.cartTotalCents = cartTotalCents;
 	}
 
 	public double getCartItemPromoSavings() {
-		return cartItemPromoSavings;
+		return Money.toDollars(cartItemPromoSavingsCents);
 	}
 
 	public void setCartItemPromoSavings(double cartItemPromoSavings) {
-		this.cartItemPromoSavings = cartItemPromoSavings;
+		this.cartItemPromoSavingsCents = Money.ofDollars(cartItemPromoSavings);
+	}
+
+	public long getCartItemPromoSavingsCents() {
+		return cartItemPromoSavingsCents;
+	}
+
+	public void setCartItemPromoSavingsCents(long cartItemPromoSavingsCents) {
+		this.cartItemPromoSavingsCents = cartItemPromoSavingsCents;
 	}
 
 	public double getShippingPromoSavings() {
-		return shippingPromoSavings;
+		return Money.toDollars(shippingPromoSavingsCents);
 	}
 
 	public void setShippingPromoSavings(double shippingPromoSavings) {
-		this.shippingPromoSavings = shippingPromoSavings;
+		this.shippingPromoSavingsCents = Money.ofDollars(shippingPromoSavings);
+	}
+
+	public long getShippingPromoSavingsCents() {
+		return shippingPromoSavingsCents;
+	}
+
+	public void setShippingPromoSavingsCents(long shippingPromoSavingsCents) {
+		this.shippingPromoSavingsCents = shippingPromoSavingsCents;
 	}
 
 	@Override
 	public String toString() {
-		return "ShoppingCart [cartItemTotal=" + cartItemTotal
-				+ ", cartItemPromoSavings=" + cartItemPromoSavings
-				+ ", shippingTotal=" + shippingTotal
-				+ ", shippingPromoSavings=" + shippingPromoSavings
-				+ ", cartTotal=" + cartTotal + ", shoppingCartItemList="
+		return "ShoppingCart [cartItemTotal=" + getCartItemTotal()
+				+ ", cartItemPromoSavings=" + getCartItemPromoSavings()
+				+ ", shippingTotal=" + getShippingTotal()
+				+ ", shippingPromoSavings=" + getShippingPromoSavings()
+				+ ", cartTotal=" + getCartTotal() + ", shoppingCartItemList="
 				+ shoppingCartItemList + "]";
 	}
 }
@@ -1,26 +1,55 @@
 package com.redhat.coolstore.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 public class ShoppingCartItem implements Serializable {
 	
+	// unchanged from when amounts were doubles; see ShoppingCart
 	private static final long serialVersionUID = 6964558044240061049L;
 
-	private double price;
+	private long priceCents;
 	private int quantity;
-	private double promoSavings;
+	private long promoSavingsCents;
 	private Product product;
 	
 	public ShoppingCartItem() {
 		
 	}
+
+	/**
+	 * Copies a line so it can go into another cart without the two sharing it.
+	 */
+	public ShoppingCartItem(ShoppingCartItem other) {
+		this.priceCents = other.priceCents;
+		this.quantity = other.quantity;
+		this.promoSavingsCents = other.promoSavingsCents;
+		this.product = other.product;
+	}
 	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		priceCents = ShoppingCart.readCents(fields, "priceCents", "price");
+		quantity = fields.get("quantity", 0);
+		promoSavingsCents = ShoppingCart.readCents(fields, "promoSavingsCents", "promoSavings");
+		product = (Product) fields.get("product", null);
+	}
+
 	public double getPrice() {
-		return price;
+		return Money.toDollars(priceCents);
 	}
 
 	public void setPrice(double price) {
-		this.price = price;
+		this.priceCents = Money.ofDollars(price);
+	}
+
+	public long getPriceCents() {
+		return priceCents;
+	}
+
+	public void setPriceCents(long priceCents) {
+		this.priceCents = priceCents;
 	}
 
 	public Product getProduct() {
@@ -40,17 +69,25 @@ public class ShoppingCartItem implements Serializable {
 	}
 
 	public double getPromoSavings() {
-		return promoSavings;
+		return Money.toDollars(promoSavingsCents);
 	}
 
 	public void setPromoSavings(double promoSavings) {
-		this.promoSavings = promoSavings;
+		this.promoSavingsCents = Money.ofDollars(promoSavings);
+	}
+
+	public long getPromoSavingsCents() {
+		return promoSavingsCents;
+	}
+
+	public void setPromoSavingsCents(long promoSavingsCents) {
+		this.promoSavingsCents = promoSavingsCents;
 	}
 
 	@Override
 	public String toString() {
-		return "ShoppingCartItem [price=" + price + ", quantity=" + quantity
-				+ ", promoSavings=" + promoSavings + ", product=" + product
+		return "ShoppingCartItem [price=" + getPrice() + ", quantity=" + quantity
+				+ ", promoSavings=" + getPromoSavings() + ", product=" + product
 				+ "]";
 	}
 		
@@ -0,0 +1,46 @@
+package com.redhat.coolstore.rest;
+
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.json.stream.JsonGenerator;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import com.redhat.coolstore.model.CartBatchResult;
+import com.redhat.coolstore.utils.Transformers;
+
+/**
+ * Writes the response of a batch cart update, with the cart in the same form
+ * {@link ShoppingCartJsonWriter} gives it.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class CartBatchResultJsonWriter implements MessageBodyWriter<CartBatchResult> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return CartBatchResult.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(CartBatchResult result, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(CartBatchResult result, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) {
+        // not closed: the container owns the entity stream
+        JsonGenerator generator = Transformers.createGenerator(entityStream);
+        synchronized (result.getCart()) {
+            Transformers.writeCartBatchResult(generator, result);
+        }
+        generator.flush();
+    }
+}
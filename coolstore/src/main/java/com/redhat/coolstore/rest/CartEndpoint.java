@@ -1,24 +1,34 @@
 package com.redhat.coolstore.rest;
 
 import java.io.Serializable;
+import java.net.URI;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import javax.enterprise.context.SessionScoped;
 import javax.inject.Inject;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 
+import com.redhat.coolstore.model.CartBatchResult;
+import com.redhat.coolstore.model.CartOperation;
+import com.redhat.coolstore.model.CartOperationResult;
 import com.redhat.coolstore.model.Product;
 import com.redhat.coolstore.model.ShoppingCart;
 import com.redhat.coolstore.model.ShoppingCartItem;
+import com.redhat.coolstore.service.CheckoutException;
 import com.redhat.coolstore.service.ShoppingCartService;
 
 @SessionScoped
@@ -27,6 +37,8 @@ public class CartEndpoint implements Serializable {
 
 	private static final long serialVersionUID = -7227732980791688773L;
 
+	private static final int MAX_BATCH_OPERATIONS = Integer.getInteger("coolstore.cart.maxBatchOperations", 500);
+
 	@Inject
 	private ShoppingCartService shoppingCartService;
 
@@ -40,8 +52,52 @@ public class CartEndpoint implements Serializable {
 	@POST
 	@Path("/checkout/{cartId}")
 	@Produces(MediaType.APPLICATION_JSON)
-	public ShoppingCart checkout(@PathParam("cartId") String cartId) {
-		return shoppingCartService.checkOutShoppingCart(cartId);
+	public Response checkout(@PathParam("cartId") String cartId, @Context UriInfo uriInfo) {
+		// held across the checkout so the emptied cart returned is the one the store keeps
+		ShoppingCart cart = shoppingCartService.acquireShoppingCart(cartId);
+		String orderKey;
+		try {
+			orderKey = shoppingCartService.checkOutShoppingCart(cartId);
+		} catch (CheckoutException e) {
+			if (e.getUnavailableItems().isEmpty()) {
+				throw new BadRequestException(e.getMessage());
+			}
+			throw new ClientErrorException(Response.status(Response.Status.CONFLICT)
+					.entity(e.getUnavailableItems())
+					.type(MediaType.APPLICATION_JSON)
+					.build());
+		} finally {
+			shoppingCartService.releaseShoppingCart(cartId, cart);
+		}
+		URI status = uriInfo.getBaseUriBuilder()
+				.path(OrderEndpoint.class)
+				.path("status/{orderKey}")
+				.build(orderKey);
+		return Response.accepted(cart).location(status).build();
+	}
+
+	/**
+	 * Applies a list of add, remove and set operations to the cart and prices it once,
+	 * for instance to restore a saved cart in one request.
+	 */
+	@POST
+	@Path("/{cartId}/batch")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	public CartBatchResult batch(@PathParam("cartId") String cartId, List<CartOperation> operations) {
+		if (operations == null || operations.isEmpty() || operations.contains(null)) {
+			throw new BadRequestException("Expected a list of cart operations");
+		}
+		if (operations.size() > MAX_BATCH_OPERATIONS) {
+			throw new BadRequestException("At most " + MAX_BATCH_OPERATIONS + " operations per batch");
+		}
+		ShoppingCart cart = shoppingCartService.acquireShoppingCart(cartId);
+		try {
+			List<CartOperationResult> results = shoppingCartService.applyOperations(cart, operations);
+			return new CartBatchResult(cart, results);
+		} finally {
+			shoppingCartService.releaseShoppingCart(cartId, cart);
+		}
 	}
 
 	@POST
@@ -50,22 +106,16 @@ public class CartEndpoint implements Serializable {
 	public ShoppingCart add(@PathParam("cartId") String cartId,
 							@PathParam("itemId") String itemId,
 							@PathParam("quantity") int quantity) throws Exception {
-		ShoppingCart cart = shoppingCartService.getShoppingCart(cartId);
-
 		Product product = shoppingCartService.getProduct(itemId);
+		if (product == null) {
+			throw new NotFoundException("Unknown product " + itemId);
+		}
 
-		ShoppingCartItem sci = new ShoppingCartItem();
-		sci.setProduct(product);
-		sci.setQuantity(quantity);
-		sci.setPrice(product.getPrice());
-		cart.addShoppingCartItem(sci);
-
+		ShoppingCart cart = shoppingCartService.acquireShoppingCart(cartId);
 		try {
-			shoppingCartService.priceShoppingCart(cart);
-			cart.setShoppingCartItemList(dedupeCartItems(cart.getShoppingCartItemList()));
-		} catch (Exception ex) {
-			cart.removeShoppingCartItem(sci);
-			throw ex;
+			shoppingCartService.addShoppingCartItem(cart, product, quantity);
+		} finally {
+			shoppingCartService.releaseShoppingCart(cartId, cart);
 		}
 
 		return cart;
@@ -77,19 +127,33 @@ public class CartEndpoint implements Serializable {
 	public ShoppingCart set(@PathParam("cartId") String cartId,
 							@PathParam("tmpId") String tmpId) throws Exception {
 
-		ShoppingCart cart = shoppingCartService.getShoppingCart(cartId);
-		ShoppingCart tmpCart = shoppingCartService.getShoppingCart(tmpId);
-
-		if (tmpCart != null) {
-			cart.resetShoppingCartItemList();
-			cart.setShoppingCartItemList(tmpCart.getShoppingCartItemList());
+		ShoppingCart tmpCart = shoppingCartService.findShoppingCart(tmpId);
+
+		// copy the lines under the temporary cart's lock and apply them under the target's,
+		// so neither cart is changed without its lock and the two locks are never nested
+		List<ShoppingCartItem> items = null;
+		if (tmpCart != null && !tmpId.equals(cartId)) {
+			synchronized (tmpCart) {
+				items = new ArrayList<>(tmpCart.getShoppingCartItemList().size());
+				for (ShoppingCartItem item : tmpCart.getShoppingCartItemList()) {
+					items.add(new ShoppingCartItem(item));
+				}
+			}
 		}
 
+		ShoppingCart cart = shoppingCartService.acquireShoppingCart(cartId);
 		try {
-			shoppingCartService.priceShoppingCart(cart);
-			cart.setShoppingCartItemList(dedupeCartItems(cart.getShoppingCartItemList()));
-		} catch (Exception ex) {
-			throw ex;
+			synchronized (cart) {
+				if (items != null) {
+					cart.resetShoppingCartItemList();
+					cart.setShoppingCartItemList(items);
+				}
+
+				cart.mergeDuplicateItems();
+				shoppingCartService.priceShoppingCart(cart);
+			}
+		} finally {
+			shoppingCartService.releaseShoppingCart(cartId, cart);
 		}
 
 		return cart;
@@ -102,47 +166,13 @@ public class CartEndpoint implements Serializable {
 							   @PathParam("itemId") String itemId,
 							   @PathParam("quantity") int quantity) throws Exception {
 
-		List<ShoppingCartItem> toRemoveList = new ArrayList<>();
-
-		ShoppingCart cart = shoppingCartService.getShoppingCart(cartId);
-
-		cart.getShoppingCartItemList().stream()
-				.filter(sci -> sci.getProduct().getItemId().equals(itemId))
-				.forEach(sci -> {
-					if (quantity >= sci.getQuantity()) {
-						toRemoveList.add(sci);
-					} else {
-						sci.setQuantity(sci.getQuantity() - quantity);
-					}
-				});
-
-		toRemoveList.forEach(cart::removeShoppingCartItem);
-
-		shoppingCartService.priceShoppingCart(cart);
-		return cart;
-	}
-
-
-
-	private List<ShoppingCartItem> dedupeCartItems(List<ShoppingCartItem> cartItems) {
-		List<ShoppingCartItem> result = new ArrayList<>();
-		Map<String, Integer> quantityMap = new HashMap<>();
-		for (ShoppingCartItem sci : cartItems) {
-			if (quantityMap.containsKey(sci.getProduct().getItemId())) {
-				quantityMap.put(sci.getProduct().getItemId(), quantityMap.get(sci.getProduct().getItemId()) + sci.getQuantity());
-			} else {
-				quantityMap.put(sci.getProduct().getItemId(), sci.getQuantity());
-			}
+		ShoppingCart cart = shoppingCartService.acquireShoppingCart(cartId);
+		try {
+			shoppingCartService.removeShoppingCartItem(cart, itemId, quantity);
+		} finally {
+			shoppingCartService.releaseShoppingCart(cartId, cart);
 		}
 
-		for (String itemId : quantityMap.keySet()) {
-			Product p = shoppingCartService.getProduct(itemId);
-			ShoppingCartItem newItem = new ShoppingCartItem();
-			newItem.setQuantity(quantityMap.get(itemId));
-			newItem.setPrice(p.getPrice());
-			newItem.setProduct(p);
-			result.add(newItem);
-		}
-		return result;
+		return cart;
 	}
 }
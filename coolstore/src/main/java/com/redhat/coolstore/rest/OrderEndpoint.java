@@ -1,19 +1,29 @@
 package com.redhat.coolstore.rest;
 
 import java.io.Serializable;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
+import javax.json.stream.JsonGenerator;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 
 import com.redhat.coolstore.model.Order;
+import com.redhat.coolstore.model.OrderStatus;
+import com.redhat.coolstore.model.Page;
 import com.redhat.coolstore.service.OrderService;
+import com.redhat.coolstore.utils.Transformers;
 
 @RequestScoped
 @Path("/orders")
@@ -33,6 +43,56 @@ public class OrderEndpoint implements Serializable {
         return os.getOrders();
     }
 
+    /**
+     * Returns up to {@code limit} orders ordered by orderId, starting after the given one.
+     */
+    @GET
+    @Path("/page")
+    public Page<Order> listPage(@QueryParam("after") @DefaultValue("0") long after,
+                                @QueryParam("limit") @DefaultValue("100") int limit) {
+        int size = ProductEndpoint.pageSize(limit);
+        List<Order> orders = os.getOrders(after, size);
+        String next = orders.size() < size ? null : String.valueOf(orders.get(orders.size() - 1).getOrderId());
+        return new Page<>(orders, next);
+    }
+
+    /**
+     * Writes every order as one JSON array, reading and flushing it a page at a time.
+     */
+    @GET
+    @Path("/export")
+    public StreamingOutput export(@QueryParam("fetchSize") @DefaultValue("500") int fetchSize) {
+        int size = ProductEndpoint.pageSize(fetchSize);
+        return out -> {
+            try (Stream<Order> orders = os.streamOrders(size);
+                 JsonGenerator generator = Transformers.createGenerator(out)) {
+                generator.writeStartArray();
+                int written = 0;
+                Iterator<Order> it = orders.iterator();
+                while (it.hasNext()) {
+                    Transformers.writeOrder(generator, it.next());
+                    if (++written % size == 0) {
+                        generator.flush();
+                    }
+                }
+                generator.writeEnd();
+            }
+        };
+    }
+
+    /**
+     * Reports how far an order accepted at checkout has got; the checkout response links here.
+     */
+    @GET
+    @Path("/status/{orderKey}")
+    public OrderStatus getOrderStatus(@PathParam("orderKey") String orderKey) {
+        OrderStatus status = os.getOrderStatus(orderKey);
+        if (status == null) {
+            throw new NotFoundException("Unknown order " + orderKey);
+        }
+        return status;
+    }
+
     @GET
     @Path("/{orderId}")
     public Order getOrder(@PathParam("orderId") long orderId) {
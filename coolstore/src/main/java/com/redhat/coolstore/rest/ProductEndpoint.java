@@ -1,15 +1,24 @@
 package com.redhat.coolstore.rest;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.ws.rs.*;
+import javax.json.stream.JsonGenerator;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 
+import com.redhat.coolstore.model.CatalogItemEntity;
+import com.redhat.coolstore.model.Page;
 import com.redhat.coolstore.model.Product;
+import com.redhat.coolstore.service.CatalogService;
 import com.redhat.coolstore.service.ProductService;
+import com.redhat.coolstore.utils.Transformers;
 
 @RequestScoped
 @Path("/products")
@@ -22,9 +31,16 @@ public class ProductEndpoint implements Serializable {
      */
     private static final long serialVersionUID = -7227732980791688773L;
 
+    static final int DEFAULT_PAGE_SIZE = 100;
+
+    static final int MAX_PAGE_SIZE = 1000;
+
     @Inject
     private ProductService pm;
 
+    @Inject
+    private CatalogService catalogService;
+
 
     @GET
     @Path("/")
@@ -32,10 +48,57 @@ public class ProductEndpoint implements Serializable {
         return pm.getProducts();
     }
 
+    /**
+     * Returns up to {@code limit} products ordered by itemId, starting after the given one.
+     */
+    @GET
+    @Path("/page")
+    public Page<Product> listPage(@QueryParam("after") String after,
+                                  @QueryParam("limit") @DefaultValue("100") int limit) {
+        int size = pageSize(limit);
+        List<Product> products = new ArrayList<>(size);
+        for (CatalogItemEntity entity : catalogService.getCatalogItems(after, size)) {
+            products.add(Transformers.toProduct(entity));
+        }
+        String next = products.size() < size ? null : products.get(products.size() - 1).getItemId();
+        return new Page<>(products, next);
+    }
+
+    /**
+     * Writes the whole catalog as one JSON array, reading and flushing it a page at a time.
+     */
+    @GET
+    @Path("/export")
+    public StreamingOutput export(@QueryParam("fetchSize") @DefaultValue("500") int fetchSize) {
+        int size = pageSize(fetchSize);
+        return out -> {
+            try (Stream<CatalogItemEntity> items = catalogService.streamCatalogItems(size);
+                 JsonGenerator generator = Transformers.createGenerator(out)) {
+                generator.writeStartArray();
+                int written = 0;
+                Iterator<CatalogItemEntity> it = items.iterator();
+                while (it.hasNext()) {
+                    Transformers.writeProduct(generator, Transformers.toProduct(it.next()));
+                    if (++written % size == 0) {
+                        generator.flush();
+                    }
+                }
+                generator.writeEnd();
+            }
+        };
+    }
+
     @GET
     @Path("/{itemId}")
     public Product getProduct(@PathParam("itemId") String itemId) {
         return pm.getProductByItemId(itemId);
     }
 
+    static int pageSize(int requested) {
+        if (requested <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(requested, MAX_PAGE_SIZE);
+    }
+
 }
@@ -0,0 +1,46 @@
+package com.redhat.coolstore.rest;
+
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.json.stream.JsonGenerator;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import com.redhat.coolstore.model.ShoppingCart;
+import com.redhat.coolstore.utils.Transformers;
+
+/**
+ * Writes carts as JSON with their amounts in dollars, exactly as before amounts were kept
+ * in cents, and without the cents accessors a bean-based provider would add.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class ShoppingCartJsonWriter implements MessageBodyWriter<ShoppingCart> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return ShoppingCart.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(ShoppingCart cart, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(ShoppingCart cart, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) {
+        // not closed: the container owns the entity stream
+        JsonGenerator generator = Transformers.createGenerator(entityStream);
+        synchronized (cart) {
+            Transformers.writeShoppingCart(generator, cart);
+        }
+        generator.flush();
+    }
+}
@@ -0,0 +1,140 @@
+package com.redhat.coolstore.rest;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import com.redhat.coolstore.service.AuditWriter;
+import com.redhat.coolstore.service.CacheStatistics;
+import com.redhat.coolstore.service.LowStockMonitor;
+import com.redhat.coolstore.service.OrderAnalyticsHandler;
+import com.redhat.coolstore.service.OrderEventDispatcher;
+import com.redhat.coolstore.service.OrderOutboxRelay;
+import com.redhat.coolstore.service.ProductCatalogCache;
+import com.redhat.coolstore.service.ShoppingCartStore;
+
+@RequestScoped
+@Path("/stats")
+@Produces(MediaType.APPLICATION_JSON)
+public class StatsEndpoint implements Serializable {
+
+    private static final long serialVersionUID = -3120441625930871253L;
+
+    @Inject
+    private ShoppingCartStore shoppingCartStore;
+
+    @Inject
+    private ProductCatalogCache catalogCache;
+
+    @Inject
+    private OrderEventDispatcher orderEventDispatcher;
+
+    @Inject
+    private OrderAnalyticsHandler orderAnalytics;
+
+    @Inject
+    private LowStockMonitor lowStockMonitor;
+
+    @Inject
+    private AuditWriter auditWriter;
+
+    @Inject
+    private OrderOutboxRelay outboxRelay;
+
+    @Inject
+    private CacheStatistics cacheStatistics;
+
+    @GET
+    @Path("/carts")
+    public Map<String, Object> carts() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", shoppingCartStore.getHits());
+        stats.put("misses", shoppingCartStore.getMisses());
+        stats.put("hitRate", shoppingCartStore.getHitRate());
+        stats.put("evictions", shoppingCartStore.getEvictions());
+        stats.put("residentCarts", shoppingCartStore.getResidentCarts());
+        stats.put("idleCarts", shoppingCartStore.getIdleCarts());
+        stats.put("residentBytes", shoppingCartStore.getResidentBytes());
+        return stats;
+    }
+
+    @GET
+    @Path("/catalog")
+    public Map<String, Object> catalog() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", catalogCache.getHits());
+        stats.put("misses", catalogCache.getMisses());
+        stats.put("loads", catalogCache.getLoads());
+        stats.put("averageLoadMillis", catalogCache.getAverageLoadMillis());
+        stats.put("size", catalogCache.getSize());
+        return stats;
+    }
+
+    @GET
+    @Path("/orders")
+    public Map<String, Object> orders() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("orders", orderAnalytics.getOrders());
+        stats.put("units", orderAnalytics.getUnits());
+        stats.put("revenue", orderAnalytics.getRevenue());
+        stats.put("handlers", orderEventDispatcher.getHandlerStats());
+        return stats;
+    }
+
+    @GET
+    @Path("/low-stock")
+    public Map<String, Long> lowStock() {
+        return lowStockMonitor.getAtRiskItems();
+    }
+
+    @GET
+    @Path("/audit")
+    public Map<String, Object> audit() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", auditWriter.getQueueDepth());
+        stats.put("queueCapacity", auditWriter.getQueueCapacity());
+        stats.put("written", auditWriter.getWritten());
+        stats.put("dropped", auditWriter.getDropped());
+        stats.put("failed", auditWriter.getFailed());
+        stats.put("syncs", auditWriter.getSyncs());
+        stats.put("averageWriteMicros", auditWriter.getAverageWriteMicros());
+        stats.put("maxWriteMicros", auditWriter.getMaxWriteMicros());
+        stats.put("averageLatencyMicros", auditWriter.getAverageLatencyMicros());
+        return stats;
+    }
+
+    @GET
+    @Path("/outbox")
+    public Map<String, Object> outbox() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", outboxRelay.getPending());
+        stats.put("oldestPendingMillis", outboxRelay.getOldestPendingMillis());
+        stats.put("published", outboxRelay.getPublished());
+        stats.put("batches", outboxRelay.getBatches());
+        stats.put("throughputPerSecond", outboxRelay.getThroughput());
+        stats.put("averageLagMillis", outboxRelay.getAverageLagMillis());
+        stats.put("maxLagMillis", outboxRelay.getMaxLagMillis());
+        stats.put("failedAttempts", outboxRelay.getFailedAttempts());
+        stats.put("givenUp", outboxRelay.getGivenUp());
+        return stats;
+    }
+
+    @GET
+    @Path("/cache")
+    public Map<String, Object> cache() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("statisticsEnabled", cacheStatistics.isEnabled());
+        stats.put("secondLevel", cacheStatistics.getSecondLevelCache());
+        stats.put("query", cacheStatistics.getQueryCache());
+        stats.put("regions", cacheStatistics.getRegions());
+        return stats;
+    }
+
+}
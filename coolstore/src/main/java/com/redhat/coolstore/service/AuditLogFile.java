@@ -0,0 +1,194 @@
+package com.redhat.coolstore.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The audit segment currently being appended to by {@link AuditWriter}.
+ *
+ * A new segment is started once the current one would grow past {@code maxBytes} or has
+ * been open for {@code rollMillis}, and only the newest {@code maxFiles} segments are kept.
+ * In mapped mode the file is written through a {@link MappedByteBuffer} that is extended
+ * {@code mapChunkBytes} at a time; filled chunks are kept until the next {@link #force()}
+ * has flushed them, and the segment is unmapped and trimmed back to the written length
+ * when it is closed. Not thread safe; only the audit writer thread touches it.
+ */
+final class AuditLogFile implements Closeable {
+
+    private static final DateTimeFormatter SEGMENT_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Path directory;
+    private final String prefix;
+    private final String extension;
+    private final boolean mapped;
+    private final long maxBytes;
+    private final long rollMillis;
+    private final int maxFiles;
+    private final int mapChunkBytes;
+
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private final List<MappedByteBuffer> unforcedChunks = new ArrayList<>();
+    private long size;
+    private long openedAt;
+
+    AuditLogFile(Path directory, String prefix, String extension, boolean mapped,
+                 long maxBytes, long rollMillis, int maxFiles, int mapChunkBytes) throws IOException {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.extension = extension;
+        this.mapped = mapped;
+        this.maxBytes = maxBytes;
+        this.rollMillis = rollMillis;
+        this.maxFiles = maxFiles;
+        this.mapChunkBytes = mapChunkBytes;
+        Files.createDirectories(directory);
+        open();
+    }
+
+    void append(ByteBuffer data) throws IOException {
+        if (size > 0 && (size + data.remaining() > maxBytes || System.currentTimeMillis() - openedAt >= rollMillis)) {
+            roll();
+        }
+        int length = data.remaining();
+        if (mapped) {
+            while (data.hasRemaining()) {
+                if (!map.hasRemaining()) {
+                    unforcedChunks.add(map);
+                    map = channel.map(FileChannel.MapMode.READ_WRITE, size + (length - data.remaining()), mapChunkBytes);
+                }
+                int n = Math.min(map.remaining(), data.remaining());
+                ByteBuffer chunk = data.duplicate();
+                chunk.limit(chunk.position() + n);
+                map.put(chunk);
+                data.position(data.position() + n);
+            }
+        } else {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+        size += length;
+    }
+
+    /**
+     * Forces everything appended so far to the storage device.
+     */
+    void force() throws IOException {
+        if (mapped) {
+            for (MappedByteBuffer chunk : unforcedChunks) {
+                chunk.force();
+            }
+            map.force();
+            for (MappedByteBuffer chunk : unforcedChunks) {
+                unmap(chunk);
+            }
+            unforcedChunks.clear();
+        } else {
+            channel.force(false);
+        }
+    }
+
+    boolean isRollDue() {
+        return size > 0 && System.currentTimeMillis() - openedAt >= rollMillis;
+    }
+
+    void roll() throws IOException {
+        closeSegment();
+        open();
+        prune();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+
+    private void open() throws IOException {
+        Path file = directory.resolve(prefix + "-" + LocalDateTime.now().format(SEGMENT_NAME) + extension);
+        for (int i = 1; Files.exists(file); i++) {
+            file = directory.resolve(prefix + "-" + LocalDateTime.now().format(SEGMENT_NAME) + "-" + i + extension);
+        }
+        size = 0;
+        openedAt = System.currentTimeMillis();
+        if (mapped) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, mapChunkBytes);
+        } else {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            force();
+            if (mapped) {
+                // a live mapping past the new end of file would fault on access, and some
+                // platforms refuse to truncate a mapped file at all
+                unmap(map);
+                map = null;
+                channel.truncate(size);
+            }
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Releases a mapping now rather than when it is garbage collected. There is no public API
+     * for this, so the JDK's own cleaner is invoked; if that is not accessible the mapping is
+     * left to the collector.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // Java 8
+                Method cleaner = buffer.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                Object clean = cleaner.invoke(buffer);
+                clean.getClass().getMethod("clean").invoke(clean);
+                return;
+            }
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // left to the garbage collector
+        }
+    }
+
+    private void prune() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "-*" + extension)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        Collections.sort(segments);
+        for (int i = 0; i < segments.size() - maxFiles; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.redhat.coolstore.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.inject.Inject;
+import javax.json.stream.JsonGenerator;
+
+import com.enterprise.audit.logging.config.AuditConfiguration;
+import com.enterprise.audit.logging.exception.AuditLoggingException;
+import com.enterprise.audit.logging.model.AuditEvent;
+import com.enterprise.audit.logging.model.AuditResult;
+import com.enterprise.audit.logging.service.FileSystemAuditLogger;
+import com.redhat.coolstore.utils.MpscRingBuffer;
+import com.redhat.coolstore.utils.Transformers;
+
+/**
+ * The one audit log writer shared by every service in the application.
+ *
+ * Callers only enqueue: {@link #log(AuditEvent)} puts the event on a bounded lock-free ring
+ * of {@code coolstore.audit.queueSize} entries and returns, counting the event as dropped
+ * when the ring is full. A single writer thread drains up to {@code coolstore.audit.batchSize}
+ * events at a time, encodes them as JSON lines and appends them to the current segment in
+ * {@code coolstore.audit.dir}.
+ *
+ * {@code coolstore.audit.mode} selects how segments are written: {@code channel} (default)
+ * appends through a file channel, {@code mmap} through a memory-mapped region, and
+ * {@code library} hands each event to a single {@link FileSystemAuditLogger} instead.
+ * {@code coolstore.audit.fsync} is {@code batch} to force every drained batch to disk as
+ * one group commit, {@code interval} to force at most every {@code coolstore.audit.fsyncMillis},
+ * or {@code none} to leave it to the operating system. Segments roll at
+ * {@code coolstore.audit.maxFileSizeMB} or every {@code coolstore.audit.rollMinutes}, keeping
+ * the newest {@code coolstore.audit.maxFiles}.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AuditWriter {
+
+    static final String DEFAULT_DIRECTORY = "./device-inventory-audit-logs";
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    enum Mode { CHANNEL, MMAP, LIBRARY }
+
+    enum FsyncPolicy { BATCH, INTERVAL, NONE }
+
+    @Inject
+    Logger log;
+
+    @Resource
+    ManagedThreadFactory threadFactory;
+
+    private final String directory = System.getProperty("coolstore.audit.dir", DEFAULT_DIRECTORY);
+
+    private final Mode mode = Mode.valueOf(System.getProperty("coolstore.audit.mode", "channel").toUpperCase());
+
+    private final FsyncPolicy fsyncPolicy = FsyncPolicy.valueOf(System.getProperty("coolstore.audit.fsync", "batch").toUpperCase());
+
+    private final long fsyncMillis = Long.getLong("coolstore.audit.fsyncMillis", 1000L);
+
+    private final int batchSize = Integer.getInteger("coolstore.audit.batchSize", 256);
+
+    private final long maxFileSizeMB = Long.getLong("coolstore.audit.maxFileSizeMB", 64L);
+
+    private final long rollMinutes = Long.getLong("coolstore.audit.rollMinutes", 60L);
+
+    private final int maxFiles = Integer.getInteger("coolstore.audit.maxFiles", AuditConfiguration.DEFAULT_MAX_FILES);
+
+    private final int mapChunkBytes = Integer.getInteger("coolstore.audit.mapChunkBytes", 4 << 20);
+
+    private final MpscRingBuffer<Pending> ring = new MpscRingBuffer<>(Integer.getInteger("coolstore.audit.queueSize", 16_384));
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final AtomicLong maxWriteNanos = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+
+    private final Buffer encoded = new Buffer();
+
+    private AuditLogFile file;
+
+    private FileSystemAuditLogger libraryLogger;
+
+    private long lastSync;
+
+    private boolean unsynced;
+
+    private volatile boolean running;
+
+    private volatile boolean waiting;
+
+    private Thread writer;
+
+    @PostConstruct
+    void start() {
+        try {
+            if (mode == Mode.LIBRARY) {
+                AuditConfiguration config = new AuditConfiguration();
+                config.setLogDirectory(directory);
+                config.setAutoCreateDirectory(true);
+                config.setMaxFileSizeMB(maxFileSizeMB);
+                config.setMaxFiles(maxFiles);
+                libraryLogger = new FileSystemAuditLogger(config);
+            } else {
+                file = new AuditLogFile(Paths.get(directory), AuditConfiguration.DEFAULT_LOG_FILE_PREFIX,
+                        AuditConfiguration.DEFAULT_LOG_FILE_EXTENSION, mode == Mode.MMAP,
+                        maxFileSizeMB << 20, TimeUnit.MINUTES.toMillis(rollMinutes), maxFiles, mapChunkBytes);
+            }
+        } catch (IOException | AuditLoggingException e) {
+            log.log(Level.SEVERE, "Unable to open audit log in " + directory + ", audit events will be dropped", e);
+            return;
+        }
+        running = true;
+        writer = threadFactory.newThread(this::drain);
+        writer.setName("audit-writer");
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues an event for writing. Returns {@code false} if it was dropped because the writer
+     * is not running or has fallen {@link #getQueueCapacity()} events behind.
+     */
+    public boolean log(AuditEvent event) {
+        if (!running || !ring.offer(new Pending(event, System.nanoTime()))) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (waiting) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    public boolean log(String eventType, String action, String resource, AuditResult result, String message) {
+        AuditEvent event = new AuditEvent();
+        event.setTimestamp(Instant.now());
+        event.setEventType(eventType);
+        event.setApplication("coolstore");
+        event.setAction(action);
+        event.setResource(resource);
+        event.setResult(result);
+        event.setMessage(message);
+        return log(event);
+    }
+
+    public int getQueueDepth() {
+        return ring.size();
+    }
+
+    public int getQueueCapacity() {
+        return ring.capacity();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getSyncs() {
+        return syncs.get();
+    }
+
+    /**
+     * Average time to encode, write and (depending on the fsync policy) force one batch.
+     */
+    public double getAverageWriteMicros() {
+        long n = batches.get();
+        return n == 0 ? 0 : writeNanos.get() / 1000.0 / n;
+    }
+
+    public double getMaxWriteMicros() {
+        return maxWriteNanos.get() / 1000.0;
+    }
+
+    /**
+     * Average time from {@link #log(AuditEvent)} until the event's batch was written.
+     */
+    public double getAverageLatencyMicros() {
+        long n = written.get();
+        return n == 0 ? 0 : latencyNanos.get() / 1000.0 / n;
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !ring.isEmpty()) {
+            Pending next;
+            while (batch.size() < batchSize && (next = ring.poll()) != null) {
+                batch.add(next);
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+                continue;
+            }
+            syncIfDue();
+            waiting = true;
+            if (running && ring.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            waiting = false;
+        }
+        close();
+    }
+
+    private void write(List<Pending> batch) {
+        long start = System.nanoTime();
+        try {
+            if (libraryLogger != null) {
+                for (Pending pending : batch) {
+                    libraryLogger.logEvent(pending.event);
+                }
+            } else {
+                encoded.reset();
+                for (Pending pending : batch) {
+                    try (JsonGenerator generator = Transformers.createGenerator(encoded)) {
+                        writeEvent(generator, pending.event);
+                    }
+                    encoded.write('\n');
+                }
+                file.append(encoded.asByteBuffer());
+                unsynced = true;
+                if (fsyncPolicy == FsyncPolicy.BATCH) {
+                    sync();
+                }
+            }
+        } catch (IOException | AuditLoggingException | RuntimeException e) {
+            failed.addAndGet(batch.size());
+            log.log(Level.WARNING, "Unable to write " + batch.size() + " audit events", e);
+            return;
+        }
+        long end = System.nanoTime();
+        long elapsed = end - start;
+        batches.incrementAndGet();
+        writeNanos.addAndGet(elapsed);
+        if (elapsed > maxWriteNanos.get()) {
+            maxWriteNanos.set(elapsed);
+        }
+        long latency = 0;
+        for (Pending pending : batch) {
+            latency += end - pending.enqueuedNanos;
+        }
+        latencyNanos.addAndGet(latency);
+        written.addAndGet(batch.size());
+    }
+
+    private void syncIfDue() {
+        if (file == null) {
+            return;
+        }
+        try {
+            if (unsynced && fsyncPolicy == FsyncPolicy.INTERVAL
+                    && System.currentTimeMillis() - lastSync >= fsyncMillis) {
+                sync();
+            }
+            if (file.isRollDue()) {
+                file.roll();
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to sync audit log", e);
+        }
+    }
+
+    private void sync() throws IOException {
+        file.force();
+        unsynced = false;
+        lastSync = System.currentTimeMillis();
+        syncs.incrementAndGet();
+    }
+
+    private void close() {
+        try {
+            if (file != null) {
+                file.close();
+            }
+            if (libraryLogger != null) {
+                libraryLogger.close();
+            }
+        } catch (IOException | AuditLoggingException e) {
+            log.log(Level.WARNING, "Unable to close audit log", e);
+        }
+    }
+
+    private static void writeEvent(JsonGenerator generator, AuditEvent event) {
+        generator.writeStartObject();
+        if (event.getTimestamp() != null) {
+            generator.write("timestamp", event.getTimestamp().toString());
+        }
+        writeIfPresent(generator, "eventType", event.getEventType());
+        writeIfPresent(generator, "userId", event.getUserId());
+        writeIfPresent(generator, "sessionId", event.getSessionId());
+        writeIfPresent(generator, "application", event.getApplication());
+        writeIfPresent(generator, "component", event.getComponent());
+        writeIfPresent(generator, "action", event.getAction());
+        writeIfPresent(generator, "resource", event.getResource());
+        if (event.getResult() != null) {
+            generator.write("result", event.getResult().name());
+        }
+        writeIfPresent(generator, "message", event.getMessage());
+        if (event.getDetails() != null && !event.getDetails().isEmpty()) {
+            generator.writeStartObject("details");
+            for (Map.Entry<String, Object> detail : event.getDetails().entrySet()) {
+                Object value = detail.getValue();
+                if (value == null) {
+                    generator.writeNull(detail.getKey());
+                } else if (value instanceof Long || value instanceof Integer) {
+                    generator.write(detail.getKey(), ((Number) value).longValue());
+                } else if (value instanceof Number) {
+                    generator.write(detail.getKey(), ((Number) value).doubleValue());
+                } else if (value instanceof Boolean) {
+                    generator.write(detail.getKey(), (Boolean) value);
+                } else {
+                    generator.write(detail.getKey(), value.toString());
+                }
+            }
+            generator.writeEnd();
+        }
+        writeIfPresent(generator, "correlationId", event.getCorrelationId());
+        writeIfPresent(generator, "sourceIp", event.getSourceIp());
+        writeIfPresent(generator, "userAgent", event.getUserAgent());
+        generator.writeEnd();
+    }
+
+    private static void writeIfPresent(JsonGenerator generator, String name, String value) {
+        if (value != null) {
+            generator.write(name, value);
+        }
+    }
+
+    private static final class Pending {
+        final AuditEvent event;
+        final long enqueuedNanos;
+
+        Pending(AuditEvent event, long enqueuedNanos) {
+            this.event = event;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    /**
+     * Reusable encoding buffer whose contents can be written without copying.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(64 * 1024);
+        }
+
+        ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.redhat.coolstore.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Hit ratios of the persistence unit's second-level cache regions and query cache, for
+ * sizing them. Counts are cumulative since the persistence unit started.
+ */
+@ApplicationScoped
+public class CacheStatistics {
+
+    @Inject
+    EntityManager em;
+
+    public boolean isEnabled() {
+        return statistics().isStatisticsEnabled();
+    }
+
+    public Map<String, Object> getSecondLevelCache() {
+        Statistics statistics = statistics();
+        return counts(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(),
+                statistics.getSecondLevelCachePutCount());
+    }
+
+    public Map<String, Object> getQueryCache() {
+        Statistics statistics = statistics();
+        return counts(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount());
+    }
+
+    /**
+     * Counts per region, keyed by region name.
+     */
+    public Map<String, Object> getRegions() {
+        Statistics statistics = statistics();
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String name : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(name);
+            if (region == null) {
+                continue;
+            }
+            Map<String, Object> counts = counts(region.getHitCount(), region.getMissCount(), region.getPutCount());
+            counts.put("elementsInMemory", region.getElementCountInMemory());
+            regions.put(name, counts);
+        }
+        return regions;
+    }
+
+    private Statistics statistics() {
+        return em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private static Map<String, Object> counts(long hits, long misses, long puts) {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        counts.put("hits", hits);
+        counts.put("misses", misses);
+        counts.put("puts", puts);
+        counts.put("hitRatio", hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+        return counts;
+    }
+}
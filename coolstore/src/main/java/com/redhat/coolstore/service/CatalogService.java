@@ -1,48 +1,193 @@
 package com.redhat.coolstore.service;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 
 import com.redhat.coolstore.model.*;
+import com.redhat.coolstore.utils.KeysetStream;
 
 @Stateless
 public class CatalogService {
 
+    public static final int INSUFFICIENT_STOCK = -1;
+
+    static final String FETCH_SIZE_HINT = "org.hibernate.fetchSize";
+
+    static final String CACHEABLE_HINT = "org.hibernate.cacheable";
+
+    static final String CACHE_REGION_HINT = "org.hibernate.cacheRegion";
+
+    public static final String CATALOG_QUERY_REGION = "coolstore.catalog-list";
+
+    private static final String DEDUCT =
+            "UPDATE InventoryEntity i SET i.quantity = i.quantity - :deducts WHERE i.itemId = :itemId";
+
+    private static final String CONDITIONAL_DEDUCT =
+            "UPDATE InventoryEntity i SET i.quantity = i.quantity - :deducts WHERE i.itemId = :itemId AND i.quantity >= :deducts";
+
     @Inject
     Logger log;
 
     @Inject
     private EntityManager em;
 
+    @Inject
+    private Event<InventoryChangedEvent> inventoryChanged;
+
+    @Resource
+    private SessionContext context;
+
     public CatalogService() {
     }
 
+    /**
+     * Returns the whole catalog. The result is kept in the query cache and only depends on
+     * PRODUCT_CATALOG, so inventory changes do not invalidate it; the items themselves and
+     * their inventory come from their own cache regions.
+     */
     public List<CatalogItemEntity> getCatalogItems() {
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<CatalogItemEntity> criteria = cb.createQuery(CatalogItemEntity.class);
         Root<CatalogItemEntity> member = criteria.from(CatalogItemEntity.class);
         criteria.select(member);
-        return em.createQuery(criteria).getResultList();
+        return em.createQuery(criteria)
+                .setHint(CACHEABLE_HINT, true)
+                .setHint(CACHE_REGION_HINT, CATALOG_QUERY_REGION)
+                .getResultList();
+    }
+
+    /**
+     * Returns up to {@code limit} catalog items ordered by itemId, starting after
+     * {@code afterItemId}, or from the first item if it is {@code null}.
+     */
+    public List<CatalogItemEntity> getCatalogItems(String afterItemId, int limit) {
+        TypedQuery<CatalogItemEntity> query;
+        if (afterItemId == null) {
+            query = em.createQuery("SELECT c FROM CatalogItemEntity c LEFT JOIN FETCH c.inventory ORDER BY c.itemId",
+                    CatalogItemEntity.class);
+        } else {
+            query = em.createQuery("SELECT c FROM CatalogItemEntity c LEFT JOIN FETCH c.inventory"
+                    + " WHERE c.itemId > :after ORDER BY c.itemId", CatalogItemEntity.class)
+                    .setParameter("after", afterItemId);
+        }
+        return query
+                .setHint(FETCH_SIZE_HINT, limit)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Streams the whole catalog one page of {@code fetchSize} items at a time. Pages are
+     * fetched through the bean's business interface, so each one runs as a business method
+     * of its own even though the stream is consumed after this method has returned. Consumed
+     * outside a transaction, each page is read in its own persistence context and then
+     * released, so memory use does not grow with the size of the catalog.
+     */
+    public Stream<CatalogItemEntity> streamCatalogItems(int fetchSize) {
+        CatalogService self = context.getBusinessObject(CatalogService.class);
+        return KeysetStream.of(null, fetchSize, after -> self.getCatalogItems(after, fetchSize), CatalogItemEntity::getItemId);
     }
 
     public CatalogItemEntity getCatalogItemById(String itemId) {
         return em.find(CatalogItemEntity.class, itemId);
     }
 
+    /**
+     * Loads the given catalog items and their inventory in one query. Unknown ids are
+     * left out of the result.
+     */
+    public List<CatalogItemEntity> getCatalogItemsById(Collection<String> itemIds) {
+        if (itemIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return em.createQuery("SELECT c FROM CatalogItemEntity c LEFT JOIN FETCH c.inventory WHERE c.itemId IN :ids",
+                CatalogItemEntity.class)
+                .setParameter("ids", itemIds)
+                .getResultList();
+    }
+
     public void updateInventoryItems(String itemId, int deducts) {
-        InventoryEntity inventoryEntity = getCatalogItemById(itemId).getInventory();
-        int currentQuantity = inventoryEntity.getQuantity();
-        inventoryEntity.setQuantity(currentQuantity-deducts);
-        em.merge(inventoryEntity);
+        em.createQuery(DEDUCT)
+                .setParameter("deducts", deducts)
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+        evictInventory(itemId);
+        inventoryChanged.fire(new InventoryChangedEvent(itemId));
+    }
+
+    /**
+     * Applies already aggregated deductions with one bulk update per item, in item id order
+     * so that concurrent callers lock the inventory rows in the same order.
+     */
+    public void updateInventoryItems(Map<String, Integer> deductsByItem) {
+        for (Map.Entry<String, Integer> deduct : new TreeMap<>(deductsByItem).entrySet()) {
+            updateInventoryItems(deduct.getKey(), deduct.getValue());
+        }
+    }
+
+    /**
+     * Takes {@code quantity} units of an item out of stock in a single conditional update,
+     * so concurrent checkouts of the same item can neither lose updates nor oversell it.
+     *
+     * @return the remaining quantity, or {@link #INSUFFICIENT_STOCK} if the item is unknown
+     *         or has fewer than {@code quantity} units left
+     */
+    public int decrementInventory(String itemId, int quantity) {
+        int updated = em.createQuery(CONDITIONAL_DEDUCT)
+                .setParameter("deducts", quantity)
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+        if (updated == 0) {
+            return INSUFFICIENT_STOCK;
+        }
+        evictInventory(itemId);
+        Integer left = em.createQuery("SELECT i.quantity FROM InventoryEntity i WHERE i.itemId = :itemId", Integer.class)
+                .setParameter("itemId", itemId)
+                .getSingleResult();
+        inventoryChanged.fire(new InventoryChangedEvent(itemId, left));
+        return left;
+    }
+
+    /**
+     * Batch form of {@link #decrementInventory(String, int)}. Items that could not be
+     * decremented are left out of the returned map. Rows are locked in item id order, so two
+     * checkouts sharing items wait for each other instead of deadlocking.
+     */
+    public Map<String, Integer> decrementInventory(Map<String, Integer> quantitiesByItem) {
+        Map<String, Integer> remaining = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> decrement : new TreeMap<>(quantitiesByItem).entrySet()) {
+            int left = decrementInventory(decrement.getKey(), decrement.getValue());
+            if (left != INSUFFICIENT_STOCK) {
+                remaining.put(decrement.getKey(), left);
+            }
+        }
+        return remaining;
+    }
+
+    // Hibernate already locks the inventory region for the rest of the transaction after a
+    // bulk update; dropping the entry as well means nothing else can serve the old quantity
+    // from it, whatever the region's concurrency strategy.
+    private void evictInventory(String itemId) {
+        em.getEntityManagerFactory().getCache().evict(InventoryEntity.class, itemId);
     }
 
 }
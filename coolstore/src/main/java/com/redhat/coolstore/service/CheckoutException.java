@@ -0,0 +1,33 @@
+package com.redhat.coolstore.service;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.ejb.ApplicationException;
+
+/**
+ * Thrown when a cart cannot be checked out. Rolls back any stock already reserved for it.
+ */
+@ApplicationException(rollback = true)
+public class CheckoutException extends Exception {
+
+    private static final long serialVersionUID = 5330786426013451871L;
+
+    private final List<String> unavailableItems;
+
+    public CheckoutException(String message) {
+        this(message, Collections.<String>emptyList());
+    }
+
+    public CheckoutException(String message, List<String> unavailableItems) {
+        super(message);
+        this.unavailableItems = unavailableItems;
+    }
+
+    /**
+     * Items that did not have enough stock; empty if the cart itself was invalid.
+     */
+    public List<String> getUnavailableItems() {
+        return unavailableItems;
+    }
+}
@@ -0,0 +1,96 @@
+package com.redhat.coolstore.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Resource;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import com.redhat.coolstore.model.ShoppingCart;
+import com.redhat.coolstore.model.ShoppingCartItem;
+import com.redhat.coolstore.utils.OrderMessages;
+
+/**
+ * Turns a priced cart into an accepted order without waiting on the message broker.
+ *
+ * The cart is validated, its stock is taken out with conditional updates and the encoded
+ * order is written to the outbox, all in one transaction; {@link OrderOutboxRelay} publishes
+ * it once that transaction has committed. If any item is short the whole checkout rolls
+ * back and nothing is reserved.
+ */
+@Stateless
+public class CheckoutPipeline {
+
+    @Inject
+    CatalogService catalogService;
+
+    @Inject
+    OrderOutboxStore outboxStore;
+
+    @Inject
+    OrderOutboxRelay outboxRelay;
+
+    @Resource
+    TransactionSynchronizationRegistry txRegistry;
+
+    /**
+     * @return the key of the accepted order, for polling its status
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public String submit(ShoppingCart cart) throws CheckoutException {
+        Map<String, Integer> quantities = validate(cart);
+
+        Map<String, Integer> remaining = catalogService.decrementInventory(quantities);
+        if (remaining.size() < quantities.size()) {
+            List<String> unavailable = new ArrayList<>();
+            for (String itemId : quantities.keySet()) {
+                if (!remaining.containsKey(itemId)) {
+                    unavailable.add(itemId);
+                }
+            }
+            throw new CheckoutException("Insufficient stock for " + unavailable, unavailable);
+        }
+
+        String orderKey = UUID.randomUUID().toString();
+        String format = OrderMessages.outgoingFormat();
+        outboxStore.enqueue(orderKey, format, OrderMessages.encode(cart, format));
+
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    outboxRelay.wake();
+                }
+            }
+        });
+        return orderKey;
+    }
+
+    private static Map<String, Integer> validate(ShoppingCart cart) throws CheckoutException {
+        List<ShoppingCartItem> items = cart.getShoppingCartItemList();
+        if (items == null || items.isEmpty()) {
+            throw new CheckoutException("Cart is empty");
+        }
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (ShoppingCartItem item : items) {
+            if (item.getProduct() == null || item.getQuantity() <= 0) {
+                throw new CheckoutException("Invalid cart item " + item);
+            }
+            quantities.merge(item.getProduct().getItemId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+}
@@ -0,0 +1,88 @@
+package com.redhat.coolstore.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import com.redhat.coolstore.model.Order;
+import com.redhat.coolstore.model.OrderEvent;
+import com.redhat.coolstore.model.OrderOutboxEntry;
+import com.redhat.coolstore.utils.OrderMessages;
+
+/**
+ * Stand-in for the JMS broker, selected with {@code coolstore.outbox.broker=memory}.
+ *
+ * Published entries are kept, up to {@code coolstore.outbox.memory.retain} of them, so tests
+ * can inspect what the relay sent, and are delivered straight to the
+ * {@link OrderEventDispatcher} as the message listener would, unless
+ * {@code coolstore.outbox.memory.deliver} is {@code false}. {@link #failNext(int)} makes the
+ * following publishes throw, to exercise the relay's retry handling.
+ */
+@ApplicationScoped
+public class InMemoryOrderBroker implements OrderPublisher {
+
+    @Inject
+    OrderEventDispatcher orderEventDispatcher;
+
+    private final int retain = Integer.getInteger("coolstore.outbox.memory.retain", 1000);
+
+    private final boolean deliver = !"false".equalsIgnoreCase(System.getProperty("coolstore.outbox.memory.deliver"));
+
+    private final ConcurrentLinkedDeque<OrderOutboxEntry> published = new ConcurrentLinkedDeque<>();
+
+    private final AtomicInteger failuresToInject = new AtomicInteger();
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public void publish(List<OrderOutboxEntry> entries) {
+        if (failuresToInject.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0) {
+            throw new IllegalStateException("Injected broker failure");
+        }
+        for (OrderOutboxEntry entry : entries) {
+            published.addLast(entry);
+            if (published.size() > retain) {
+                published.pollFirst();
+            }
+            if (deliver) {
+                deliver(entry);
+            }
+        }
+    }
+
+    /**
+     * Entries published so far, oldest first.
+     */
+    public List<OrderOutboxEntry> getPublished() {
+        return new ArrayList<>(published);
+    }
+
+    public void clear() {
+        published.clear();
+    }
+
+    public void failNext(int publishes) {
+        failuresToInject.set(publishes);
+    }
+
+    private void deliver(OrderOutboxEntry entry) {
+        Order order = OrderMessages.decode(entry.getFormat(), entry.getPayload());
+        order.setOrderKey(entry.getOrderKey());
+        try {
+            orderEventDispatcher.dispatch(OrderEvent.of(order, true)).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Delivering order " + entry.getOrderKey() + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.redhat.coolstore.service;
+
+/**
+ * Fired by {@link CatalogService} whenever the stock of a catalog item is changed.
+ */
+public class InventoryChangedEvent {
+
+    private final String itemId;
+
+    private final Integer quantity;
+
+    public InventoryChangedEvent(String itemId) {
+        this(itemId, null);
+    }
+
+    public InventoryChangedEvent(String itemId, Integer quantity) {
+        this.itemId = itemId;
+        this.quantity = quantity;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    /**
+     * The quantity left after the change, or {@code null} if it was not read back.
+     */
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    @Override
+    public String toString() {
+        return "InventoryChangedEvent [itemId=" + itemId + ", quantity=" + quantity + "]";
+    }
+}
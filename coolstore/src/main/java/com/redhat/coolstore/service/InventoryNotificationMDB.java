@@ -1,7 +1,8 @@
 package com.redhat.coolstore.service;
 
 import com.redhat.coolstore.model.Order;
-import com.redhat.coolstore.utils.Transformers;
+import com.redhat.coolstore.model.OrderEvent;
+import com.redhat.coolstore.utils.OrderMessages;
 
 import javax.inject.Inject;
 import javax.jms.*;
@@ -10,13 +11,17 @@ import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.rmi.PortableRemoteObject;
 import java.util.Hashtable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.logging.Logger;
 
-public class InventoryNotificationMDB implements MessageListener {
+public class InventoryNotificationMDB implements MessageListener, OrderEventHandler {
 
-    private static final int LOW_THRESHOLD = 50;
+    @Inject
+    private Logger log;
 
     @Inject
-    private CatalogService catalogService;
+    private LowStockMonitor lowStockMonitor;
 
     private final static String JNDI_FACTORY = "weblogic.jndi.WLInitialContextFactory";
     private final static String JMS_FACTORY = "TCF";
@@ -26,23 +31,14 @@ public class InventoryNotificationMDB implements MessageListener {
     private TopicSubscriber tsubscriber;
 
     public void onMessage(Message rcvMessage) {
-        TextMessage msg;
         {
             try {
-                System.out.println("received message inventory");
-                if (rcvMessage instanceof TextMessage) {
-                    msg = (TextMessage) rcvMessage;
-                    String orderStr = msg.getBody(String.class);
-                    Order order = Transformers.jsonToOrder(orderStr);
-                    order.getItemList().forEach(orderItem -> {
-                        int old_quantity = catalogService.getCatalogItemById(orderItem.getProductId()).getInventory().getQuantity();
-                        int new_quantity = old_quantity - orderItem.getQuantity();
-                        if (new_quantity < LOW_THRESHOLD) {
-                            System.out.println("Inventory for item " + orderItem.getProductId() + " is below threshold (" + LOW_THRESHOLD + "), contact supplier!");
-                        } else {
-                            orderItem.setQuantity(new_quantity);
-                        }
-                    });
+                log.fine("Received order message for inventory");
+                Order order = OrderMessages.toOrder(rcvMessage);
+                if (order != null) {
+                    // stock already taken out at checkout must not be subtracted again
+                    boolean reserved = rcvMessage.getBooleanProperty(OrderMessages.INVENTORY_RESERVED_PROPERTY);
+                    onOrder(OrderEvent.of(order, reserved));
                 }
 
 
@@ -52,6 +48,17 @@ public class InventoryNotificationMDB implements MessageListener {
         }
     }
 
+    @Override
+    public String getName() {
+        return "low-stock";
+    }
+
+    @Override
+    public CompletionStage<?> onOrder(OrderEvent order) {
+        lowStockMonitor.apply(order);
+        return CompletableFuture.completedFuture(null);
+    }
+
     public void init() throws NamingException, JMSException {
         Context ctx = getInitialContext();
         TopicConnectionFactory tconFactory = (TopicConnectionFactory) PortableRemoteObject.narrow(ctx.lookup(JMS_FACTORY), TopicConnectionFactory.class);
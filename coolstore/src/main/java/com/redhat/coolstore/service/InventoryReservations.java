@@ -0,0 +1,104 @@
+package com.redhat.coolstore.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Optional write-behind buffer for inventory deductions.
+ *
+ * When {@code coolstore.inventory.reservations.enabled} is set, deductions are added to
+ * per-item striped counters once the reserving transaction commits, and folded into the
+ * database every few seconds with one update per item; a flush that does not commit puts
+ * its deductions back. This keeps a hot item from being updated by every order, at the
+ * price of stock figures lagging by one flush interval.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class InventoryReservations {
+
+    @Inject
+    Logger log;
+
+    @Inject
+    CatalogService catalogService;
+
+    @Resource
+    TransactionSynchronizationRegistry txRegistry;
+
+    private final boolean enabled = Boolean.getBoolean("coolstore.inventory.reservations.enabled");
+
+    private final Map<String, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void reserve(final Map<String, Integer> deductsByItem) {
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    add(deductsByItem);
+                }
+            }
+        });
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*/5", persistent = false)
+    public void flush() {
+        final Map<String, Integer> deducts = new HashMap<>();
+        for (Map.Entry<String, LongAdder> e : pending.entrySet()) {
+            long sum = e.getValue().sumThenReset();
+            if (sum != 0) {
+                deducts.put(e.getKey(), (int) sum);
+            }
+        }
+        if (deducts.isEmpty()) {
+            return;
+        }
+        // the counters were reset before the update commits; put the deductions back if it
+        // does not, whether the update itself or the commit fails
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != Status.STATUS_COMMITTED) {
+                    log.warning("Inventory flush did not commit, keeping " + deducts.size() + " items pending");
+                    add(deducts);
+                }
+            }
+        });
+        catalogService.updateInventoryItems(deducts);
+    }
+
+    public long getPendingDeducts(String itemId) {
+        LongAdder adder = pending.get(itemId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    private void add(Map<String, Integer> deductsByItem) {
+        for (Map.Entry<String, Integer> deduct : deductsByItem.entrySet()) {
+            pending.computeIfAbsent(deduct.getKey(), k -> new LongAdder()).add(deduct.getValue());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.redhat.coolstore.service;
+
+import java.util.List;
+
+import javax.annotation.Resource;
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.jms.JMSContext;
+import javax.jms.JMSProducer;
+import javax.jms.Topic;
+
+import com.redhat.coolstore.model.OrderOutboxEntry;
+import com.redhat.coolstore.utils.OrderMessages;
+
+/**
+ * Publishes outbox entries to {@code topic/orders}. Each call runs in its own transaction,
+ * so the messages of a batch are committed to the broker together.
+ */
+@Stateless
+public class JmsOrderPublisher implements OrderPublisher {
+
+    @Inject
+    private JMSContext context;
+
+    @Resource(lookup = "java:/topic/orders")
+    private Topic ordersTopic;
+
+    @Override
+    public String getName() {
+        return "jms";
+    }
+
+    @Override
+    public void publish(List<OrderOutboxEntry> entries) {
+        for (OrderOutboxEntry entry : entries) {
+            JMSProducer producer = context.createProducer()
+                    .setProperty(OrderMessages.ORDER_KEY_PROPERTY, entry.getOrderKey())
+                    .setProperty(OrderMessages.INVENTORY_RESERVED_PROPERTY, true);
+            OrderMessages.send(context, producer, ordersTopic, entry.getFormat(), entry.getPayload());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.redhat.coolstore.service;
+
+/**
+ * Fired by {@link LowStockMonitor} when an item's stock drops below its threshold.
+ */
+public class LowStockAlert {
+
+    private final String itemId;
+
+    private final long quantity;
+
+    private final long threshold;
+
+    public LowStockAlert(String itemId, long quantity, long threshold) {
+        this.itemId = itemId;
+        this.quantity = quantity;
+        this.threshold = threshold;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public String toString() {
+        return "LowStockAlert [itemId=" + itemId + ", quantity=" + quantity + ", threshold=" + threshold + "]";
+    }
+}
@@ -0,0 +1,201 @@
+package com.redhat.coolstore.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.event.Event;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import com.redhat.coolstore.model.OrderEvent;
+import com.redhat.coolstore.utils.LongLongMap;
+
+/**
+ * Tracks stock per item in memory so the order stream can be checked against low-stock
+ * thresholds without reading the database.
+ *
+ * Quantities are seeded from the INVENTORY table at startup and re-seeded every 15 minutes
+ * to pick up restocking. In between, stock taken out at checkout is tracked through the
+ * {@link InventoryChangedEvent} of its commit, which carries the quantity left, and the
+ * quantities of orders whose stock was not reserved at checkout are subtracted as they
+ * arrive. Reserved orders are not subtracted again, as a re-seed may already include them.
+ * The default threshold is {@code coolstore.inventory.lowThreshold} and can be overridden
+ * per item with {@code coolstore.inventory.lowThreshold.<itemId>}. A {@link LowStockAlert}
+ * is fired when an item drops below its threshold, at most once per
+ * {@code coolstore.inventory.alertDebounceSeconds} for the same item.
+ */
+@Singleton
+@Startup
+@DependsOn("DataBaseMigrationStartup")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class LowStockMonitor {
+
+    private static final String THRESHOLD_PROPERTY = "coolstore.inventory.lowThreshold";
+
+    @Inject
+    Logger log;
+
+    @Inject
+    private EntityManager em;
+
+    @Inject
+    private Event<LowStockAlert> lowStockAlert;
+
+    private final long defaultThreshold = Long.getLong(THRESHOLD_PROPERTY, 50L);
+
+    private final long debounceMillis = TimeUnit.SECONDS.toMillis(Long.getLong("coolstore.inventory.alertDebounceSeconds", 300L));
+
+    private final LongLongMap quantities = new LongLongMap(1024);
+    private final LongLongMap thresholds = new LongLongMap(64);
+    private final LongLongMap lastAlerts = new LongLongMap(64);
+
+    // item ids that are not plain numbers are given negative keys
+    private final Map<String, Long> otherKeys = new HashMap<>();
+    private final Map<Long, String> otherIds = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        String prefix = THRESHOLD_PROPERTY + ".";
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(prefix)) {
+                setThreshold(name.substring(prefix.length()), Long.getLong(name, defaultThreshold));
+            }
+        }
+        try {
+            reseed();
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Unable to seed stock levels, starting empty", e);
+        }
+    }
+
+    @Schedule(hour = "*", minute = "*/15", persistent = false)
+    public void reseed() {
+        List<Object[]> rows = em.createQuery("SELECT i.itemId, i.quantity FROM InventoryEntity i", Object[].class)
+                .getResultList();
+        synchronized (this) {
+            quantities.clear();
+            for (Object[] row : rows) {
+                quantities.put(keyOf((String) row[0]), row[1] == null ? 0 : ((Number) row[1]).longValue());
+            }
+        }
+        log.fine("Seeded stock levels for " + rows.size() + " items");
+    }
+
+    public void apply(OrderEvent order) {
+        if (order.isInventoryReserved()) {
+            // already counted by onInventoryChanged when the checkout committed
+            return;
+        }
+        List<LowStockAlert> alerts = new ArrayList<>(0);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (OrderEvent.Line line : order.getLines()) {
+                long key = keyOf(line.getProductId());
+                if (!quantities.containsKey(key)) {
+                    continue;
+                }
+                long before = quantities.get(key, 0);
+                long after = quantities.addTo(key, -line.getQuantity());
+                checkThreshold(line.getProductId(), key, before, after, now, alerts);
+            }
+        }
+        fire(alerts);
+    }
+
+    public void onInventoryChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) InventoryChangedEvent event) {
+        if (event.getQuantity() == null) {
+            return;
+        }
+        List<LowStockAlert> alerts = new ArrayList<>(0);
+        synchronized (this) {
+            long key = keyOf(event.getItemId());
+            long before = quantities.get(key, 0);
+            quantities.put(key, event.getQuantity());
+            checkThreshold(event.getItemId(), key, before, event.getQuantity(), System.currentTimeMillis(), alerts);
+        }
+        fire(alerts);
+    }
+
+    public synchronized void setThreshold(String itemId, long threshold) {
+        thresholds.put(keyOf(itemId), threshold);
+    }
+
+    public synchronized long getQuantity(String itemId) {
+        return quantities.get(keyOf(itemId), 0);
+    }
+
+    /**
+     * Items currently below their threshold, with their tracked quantity.
+     */
+    public synchronized Map<String, Long> getAtRiskItems() {
+        Map<String, Long> atRisk = new LinkedHashMap<>();
+        for (long key : quantities.keys()) {
+            long quantity = quantities.get(key, 0);
+            if (quantity < thresholds.get(key, defaultThreshold)) {
+                atRisk.put(idOf(key), quantity);
+            }
+        }
+        return atRisk;
+    }
+
+    private void checkThreshold(String itemId, long key, long before, long after, long now, List<LowStockAlert> alerts) {
+        long threshold = thresholds.get(key, defaultThreshold);
+        if (after < threshold && before >= threshold && now - lastAlerts.get(key, Long.MIN_VALUE / 2) >= debounceMillis) {
+            lastAlerts.put(key, now);
+            alerts.add(new LowStockAlert(itemId, after, threshold));
+        }
+    }
+
+    private void fire(List<LowStockAlert> alerts) {
+        for (LowStockAlert alert : alerts) {
+            log.warning("Inventory for item " + alert.getItemId() + " is below threshold (" + alert.getThreshold() + "), contact supplier!");
+            lowStockAlert.fire(alert);
+        }
+    }
+
+    private long keyOf(String itemId) {
+        if (isPlainNumber(itemId)) {
+            return Long.parseLong(itemId);
+        }
+        Long key = otherKeys.get(itemId);
+        if (key == null) {
+            key = -1L - otherKeys.size();
+            otherKeys.put(itemId, key);
+            otherIds.put(key, itemId);
+        }
+        return key;
+    }
+
+    private String idOf(long key) {
+        return key >= 0 ? Long.toString(key) : otherIds.get(key);
+    }
+
+    private static boolean isPlainNumber(String itemId) {
+        int length = itemId.length();
+        if (length == 0 || length > 18 || (itemId.charAt(0) == '0' && length > 1)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = itemId.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,48 @@
+package com.redhat.coolstore.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import com.redhat.coolstore.model.OrderEvent;
+
+/**
+ * Running totals over the orders seen since startup.
+ */
+@ApplicationScoped
+public class OrderAnalyticsHandler implements OrderEventHandler {
+
+    private final AtomicLong orders = new AtomicLong();
+    private final AtomicLong units = new AtomicLong();
+    private final DoubleAdder revenue = new DoubleAdder();
+
+    @Override
+    public String getName() {
+        return "analytics";
+    }
+
+    @Override
+    public CompletionStage<?> onOrder(OrderEvent event) {
+        orders.incrementAndGet();
+        for (OrderEvent.Line line : event.getLines()) {
+            units.addAndGet(line.getQuantity());
+        }
+        revenue.add(event.getOrderValue());
+        return CompletableFuture.completedFuture(null);
+    }
+
+    public long getOrders() {
+        return orders.get();
+    }
+
+    public long getUnits() {
+        return units.get();
+    }
+
+    public double getRevenue() {
+        return revenue.sum();
+    }
+}
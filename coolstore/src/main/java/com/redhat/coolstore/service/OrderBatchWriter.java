@@ -0,0 +1,122 @@
+package com.redhat.coolstore.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+
+import com.redhat.coolstore.model.Order;
+import com.redhat.coolstore.model.OrderItem;
+import com.redhat.coolstore.model.OrderOutboxEntry;
+
+/**
+ * Persists a batch of orders and their inventory deductions in one transaction.
+ */
+@Stateless
+public class OrderBatchWriter {
+
+    @Inject
+    Logger log;
+
+    @Inject
+    private EntityManager em;
+
+    @Inject
+    CatalogService catalogService;
+
+    @Inject
+    InventoryReservations inventoryReservations;
+
+    /**
+     * Orders whose key is already stored, or repeated within the batch, are skipped so that
+     * redelivered messages are not booked twice. Inserts are flushed together so the driver
+     * can send them as JDBC batches, and inventory is reduced once per item for the batch,
+     * leaving out orders in {@code inventoryReserved} whose stock was taken at checkout,
+     * unless the outbox gave up on them and put their stock back.
+     *
+     * @return the orders that were new
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Set<Order> write(List<Order> orders, Set<Order> inventoryReserved) {
+        Set<String> seen = findExistingKeys(orders);
+        Set<String> released = findReleasedKeys(inventoryReserved);
+        Map<String, Integer> deductsByItem = new LinkedHashMap<>();
+        Set<Order> written = new HashSet<>();
+
+        for (Order order : orders) {
+            if (order.getOrderKey() != null && !seen.add(order.getOrderKey())) {
+                log.info("Skipping duplicate order " + order.getOrderKey());
+                continue;
+            }
+            em.persist(order);
+            written.add(order);
+            if (inventoryReserved.contains(order) && !released.contains(order.getOrderKey())) {
+                continue;
+            }
+            for (OrderItem item : order.getItemList()) {
+                Integer current = deductsByItem.get(item.getProductId());
+                deductsByItem.put(item.getProductId(), (current == null ? 0 : current) + item.getQuantity());
+            }
+        }
+        em.flush();
+
+        if (inventoryReservations.isEnabled()) {
+            inventoryReservations.reserve(deductsByItem);
+        } else {
+            catalogService.updateInventoryItems(deductsByItem);
+        }
+        return written;
+    }
+
+    // keys of reserved orders whose stock the outbox put back when it gave up on them; the
+    // rows stay locked until commit so the outbox cannot give up on them meanwhile
+    private Set<String> findReleasedKeys(Set<Order> inventoryReserved) {
+        List<String> keys = new ArrayList<>(inventoryReserved.size());
+        for (Order order : inventoryReserved) {
+            if (order.getOrderKey() != null) {
+                keys.add(order.getOrderKey());
+            }
+        }
+        Set<String> released = new HashSet<>();
+        if (keys.isEmpty()) {
+            return released;
+        }
+        for (OrderOutboxEntry entry : em.createQuery("SELECT e FROM OrderOutboxEntry e WHERE e.orderKey IN :keys",
+                OrderOutboxEntry.class)
+                .setParameter("keys", keys)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList()) {
+            if (OrderOutboxEntry.FAILED.equals(entry.getStatus())) {
+                log.warning("Order " + entry.getOrderKey() + " arrived after the outbox gave up on it,"
+                        + " taking its stock out again");
+                released.add(entry.getOrderKey());
+            }
+        }
+        return released;
+    }
+
+    private Set<String> findExistingKeys(List<Order> orders) {
+        List<String> keys = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            if (order.getOrderKey() != null) {
+                keys.add(order.getOrderKey());
+            }
+        }
+        if (keys.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(em.createQuery("SELECT o.orderKey FROM Order o WHERE o.orderKey IN :keys", String.class)
+                .setParameter("keys", keys)
+                .getResultList());
+    }
+}
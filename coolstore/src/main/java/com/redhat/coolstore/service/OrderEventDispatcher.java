@@ -0,0 +1,193 @@
+package com.redhat.coolstore.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+
+import com.redhat.coolstore.model.OrderEvent;
+
+/**
+ * Fans each received order out to every {@link OrderEventHandler}.
+ *
+ * Every handler has its own bounded queue of {@code coolstore.orders.handlerQueueSize}
+ * events and its own worker thread, so a slow handler does not hold up the others. When a
+ * queue is full, {@link #dispatch} blocks, which in turn slows down message consumption.
+ *
+ * Orders go to the {@linkplain OrderEventHandler#isStore() store} handlers first and only
+ * reach the other handlers once stored as new, so a redelivered order is not counted twice.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class OrderEventDispatcher {
+
+    @Inject
+    Logger log;
+
+    @Inject
+    @Any
+    Instance<OrderEventHandler> handlers;
+
+    @Resource
+    ManagedThreadFactory threadFactory;
+
+    private final int queueSize = Integer.getInteger("coolstore.orders.handlerQueueSize", 1000);
+
+    private final List<Worker> workers = new ArrayList<>();
+
+    private final List<Worker> stores = new ArrayList<>();
+
+    private final List<Worker> followers = new ArrayList<>();
+
+    @PostConstruct
+    void start() {
+        for (OrderEventHandler handler : handlers) {
+            Worker worker = new Worker(handler, queueSize);
+            worker.thread = threadFactory.newThread(worker);
+            worker.thread.setName("order-handler-" + handler.getName());
+            worker.thread.start();
+            workers.add(worker);
+            (handler.isStore() ? stores : followers).add(worker);
+            log.info("Registered order handler " + handler.getName());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        for (Worker worker : workers) {
+            worker.running = false;
+            worker.thread.interrupt();
+        }
+    }
+
+    /**
+     * Queues the event for the store handlers and waits for them, then queues it for the
+     * other handlers unless a store handler found it to be a duplicate.
+     *
+     * @return a future that completes once all handlers are done with the event
+     */
+    public CompletableFuture<Void> dispatch(OrderEvent event) throws InterruptedException {
+        List<CompletableFuture<Object>> stored = new ArrayList<>(stores.size());
+        for (Worker worker : stores) {
+            stored.add(worker.enqueue(event));
+        }
+        boolean isNew = true;
+        for (CompletableFuture<Object> result : stored) {
+            try {
+                isNew &= !Boolean.FALSE.equals(result.get());
+            } catch (ExecutionException e) {
+                CompletableFuture<Void> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e.getCause());
+                return failed;
+            }
+        }
+        if (!isNew) {
+            log.fine("Order " + event.getOrderKey() + " was already stored, not passing it on");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<?>[] results = new CompletableFuture<?>[followers.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = followers.get(i).enqueue(event);
+        }
+        return CompletableFuture.allOf(results);
+    }
+
+    public Map<String, Map<String, Object>> getHandlerStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        for (Worker worker : workers) {
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("queueDepth", worker.queue.size());
+            s.put("processed", worker.processed.get());
+            s.put("failed", worker.failed.get());
+            s.put("lastLagMillis", worker.lastLagMillis);
+            s.put("maxLagMillis", worker.maxLagMillis.get());
+            stats.put(worker.handler.getName(), s);
+        }
+        return stats;
+    }
+
+    private final class Worker implements Runnable {
+
+        final OrderEventHandler handler;
+        final BlockingQueue<Task> queue;
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong maxLagMillis = new AtomicLong();
+        volatile long lastLagMillis;
+        volatile boolean running = true;
+        Thread thread;
+
+        Worker(OrderEventHandler handler, int queueSize) {
+            this.handler = handler;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        CompletableFuture<Object> enqueue(OrderEvent event) throws InterruptedException {
+            Task task = new Task(event);
+            queue.put(task);
+            return task.done;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                final Task task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                long lag = System.currentTimeMillis() - task.enqueuedAt;
+                lastLagMillis = lag;
+                maxLagMillis.accumulateAndGet(lag, Math::max);
+                try {
+                    handler.onOrder(task.event).whenComplete((result, error) -> {
+                        if (error != null) {
+                            failed.incrementAndGet();
+                            task.done.completeExceptionally(error);
+                        } else {
+                            processed.incrementAndGet();
+                            task.done.complete(result);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    log.log(Level.WARNING, "Order handler " + handler.getName() + " failed", e);
+                    task.done.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private static final class Task {
+        final OrderEvent event;
+        final long enqueuedAt = System.currentTimeMillis();
+        final CompletableFuture<Object> done = new CompletableFuture<>();
+
+        Task(OrderEvent event) {
+            this.event = event;
+        }
+    }
+}
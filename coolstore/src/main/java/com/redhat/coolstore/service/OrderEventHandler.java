@@ -0,0 +1,29 @@
+package com.redhat.coolstore.service;
+
+import java.util.concurrent.CompletionStage;
+
+import com.redhat.coolstore.model.OrderEvent;
+
+/**
+ * Receives every order read from the orders topic. Implementations are discovered as CDI
+ * beans by {@link OrderEventDispatcher}, which calls each one from its own worker thread.
+ */
+public interface OrderEventHandler {
+
+    String getName();
+
+    /**
+     * @return a stage that completes once the order has been fully handled; the message is
+     *         not acknowledged until the stages of all handlers have completed
+     */
+    CompletionStage<?> onOrder(OrderEvent event);
+
+    /**
+     * Whether the handler stores orders and recognises the ones it has stored before. Its
+     * stage completes with {@code false} for an order already stored, and the other
+     * handlers are only given orders that every store handler accepted as new.
+     */
+    default boolean isStore() {
+        return false;
+    }
+}
@@ -0,0 +1,165 @@
+package com.redhat.coolstore.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.inject.Inject;
+
+import com.enterprise.audit.logging.model.AuditResult;
+import com.redhat.coolstore.model.Order;
+import com.redhat.coolstore.model.OrderEvent;
+
+/**
+ * Groups orders handed over by {@link OrderPersistenceHandler} into batches.
+ *
+ * A single writer thread waits for the first pending order, keeps collecting for up to
+ * {@code coolstore.orders.batchWaitMillis} or until {@code coolstore.orders.batchSize}
+ * orders are queued, and hands the batch to {@link OrderBatchWriter}. Each submitter gets
+ * a future that completes only once its order has committed, telling whether the order
+ * was new, so message listeners can hold their acknowledgement until then. When a batch
+ * fails, its orders are written again one at a time, so a single bad order only fails its
+ * own message. Every attempt persists new {@link Order} entities built from the
+ * {@link OrderEvent}, since those of a rolled-back attempt already carry generated ids.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class OrderIngestionBatcher {
+
+    @Inject
+    Logger log;
+
+    @Inject
+    OrderBatchWriter batchWriter;
+
+    @Inject
+    AuditWriter auditWriter;
+
+    @Resource
+    ManagedThreadFactory threadFactory;
+
+    private final int batchSize = Integer.getInteger("coolstore.orders.batchSize", 50);
+
+    private final long batchWaitMillis = Long.getLong("coolstore.orders.batchWaitMillis", 20L);
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    @PostConstruct
+    void start() {
+        running = true;
+        writer = threadFactory.newThread(this::drain);
+        writer.setName("order-ingestion");
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        writer.interrupt();
+    }
+
+    /**
+     * @return a future that completes with {@code false} if the order had been stored before
+     */
+    public CompletableFuture<Boolean> submit(OrderEvent event) {
+        Pending pending = new Pending(event);
+        queue.add(pending);
+        return pending.done;
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Pending first = queue.take();
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWaitMillis);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        for (Pending pending : queue) {
+            pending.done.completeExceptionally(new IllegalStateException("Order ingestion stopped"));
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        List<Order> orders = new ArrayList<>(batch.size());
+        Set<Order> reserved = new HashSet<>();
+        for (Pending pending : batch) {
+            pending.order = pending.event.toOrder();
+            orders.add(pending.order);
+            if (pending.event.isInventoryReserved()) {
+                reserved.add(pending.order);
+            }
+        }
+        try {
+            Set<Order> written = batchWriter.write(orders, reserved);
+            log.fine("Committed " + written.size() + " of " + orders.size() + " orders");
+            for (Pending pending : batch) {
+                boolean isNew = written.contains(pending.order);
+                if (isNew) {
+                    auditWriter.log("ORDER", "CREATE", "order/" + pending.order.getOrderKey(), AuditResult.SUCCESS,
+                            "Order stored as " + pending.order.getOrderId());
+                }
+                pending.done.complete(isNew);
+            }
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                Order order = batch.get(0).order;
+                log.log(Level.WARNING, "Order " + order.getOrderKey() + " failed", e);
+                auditWriter.log("ORDER", "CREATE", "order/" + order.getOrderKey(), AuditResult.FAILURE, String.valueOf(e));
+                batch.get(0).done.completeExceptionally(e);
+                return;
+            }
+            log.log(Level.WARNING, "Order batch of " + orders.size() + " failed, retrying its orders one by one", e);
+            for (Pending pending : batch) {
+                flush(Collections.singletonList(pending));
+            }
+        }
+    }
+
+    private static final class Pending {
+        final OrderEvent event;
+        final CompletableFuture<Boolean> done = new CompletableFuture<>();
+        // the entity of the current attempt, only used by the writer thread
+        Order order;
+
+        Pending(OrderEvent event) {
+            this.event = event;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.redhat.coolstore.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+
+import com.redhat.coolstore.model.OrderOutboxEntry;
+
+/**
+ * Publishes orders accepted at checkout from the outbox to the broker.
+ *
+ * {@code coolstore.outbox.relayThreads} relay threads each claim up to
+ * {@code coolstore.outbox.batchSize} pending entries for {@code coolstore.outbox.leaseSeconds},
+ * hand them to the {@link OrderPublisher} named by {@code coolstore.outbox.broker} as one
+ * batch, and mark them published. Claims skip rows other relays are claiming, so any number
+ * of threads and nodes can share the outbox. Relays are woken as soon as a checkout commits
+ * and otherwise poll every {@code coolstore.outbox.pollMillis}.
+ *
+ * When a batch fails its entries are retried one by one so a single bad entry cannot hold up
+ * the rest; an entry that keeps failing is given up on after
+ * {@code coolstore.outbox.maxAttempts} attempts (see {@link OrderOutboxStore#recordFailure}),
+ * and a relay backs off while sends keep failing, for instance while the broker is down.
+ *
+ * Delivery is at least once: the order key travels with each message and the consumer
+ * skips keys it has already stored.
+ */
+@Singleton
+@Startup
+@DependsOn("DataBaseMigrationStartup")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class OrderOutboxRelay {
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000L;
+
+    private static final long SAMPLE_SECONDS = 10;
+
+    @Inject
+    Logger log;
+
+    @Inject
+    OrderOutboxStore outboxStore;
+
+    @Inject
+    @Any
+    Instance<OrderPublisher> publishers;
+
+    @Resource
+    ManagedThreadFactory threadFactory;
+
+    private final String broker = System.getProperty("coolstore.outbox.broker", "jms");
+
+    private final int relayThreads = Integer.getInteger("coolstore.outbox.relayThreads", 1);
+
+    private final int batchSize = Integer.getInteger("coolstore.outbox.batchSize", 100);
+
+    private final long pollMillis = Long.getLong("coolstore.outbox.pollMillis", 1000L);
+
+    private final long leaseMillis = TimeUnit.SECONDS.toMillis(Long.getLong("coolstore.outbox.leaseSeconds", 30L));
+
+    private final int maxAttempts = Integer.getInteger("coolstore.outbox.maxAttempts", 20);
+
+    private final String relayId = UUID.randomUUID().toString().substring(0, 8);
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong givenUp = new AtomicLong();
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    private volatile double throughput;
+
+    private long lastSamplePublished;
+
+    private OrderPublisher publisher;
+
+    private volatile boolean running;
+
+    private final List<Thread> relays = new ArrayList<>();
+
+    @PostConstruct
+    void start() {
+        for (OrderPublisher candidate : publishers) {
+            if (candidate.getName().equals(broker)) {
+                publisher = candidate;
+            }
+        }
+        if (publisher == null) {
+            log.severe("No order publisher named " + broker + ", outbox entries will not be published");
+            return;
+        }
+        running = true;
+        for (int i = 0; i < relayThreads; i++) {
+            String name = relayId + "-" + i;
+            Thread thread = threadFactory.newThread(() -> run(name));
+            thread.setName("order-outbox-relay-" + i);
+            thread.start();
+            relays.add(thread);
+        }
+        log.info("Relaying order outbox to " + broker + " with " + relayThreads + " threads");
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        for (Thread thread : relays) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Asks the relays to look for pending entries now instead of at their next poll.
+     */
+    public void wake() {
+        for (Thread thread : relays) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*/10", persistent = false)
+    public void sample() {
+        long total = published.get();
+        throughput = (double) (total - lastSamplePublished) / SAMPLE_SECONDS;
+        lastSamplePublished = total;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getFailedAttempts() {
+        return failedAttempts.get();
+    }
+
+    public long getGivenUp() {
+        return givenUp.get();
+    }
+
+    /**
+     * Entries published per second over the last sampling interval.
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * Average time from checkout to publication of the entries published so far.
+     */
+    public double getAverageLagMillis() {
+        long n = published.get();
+        return n == 0 ? 0 : (double) lagMillis.get() / n;
+    }
+
+    public long getMaxLagMillis() {
+        return maxLagMillis.get();
+    }
+
+    public long getPending() {
+        return outboxStore.countPending();
+    }
+
+    /**
+     * How long the oldest pending entry has been waiting, or 0 if none is.
+     */
+    public long getOldestPendingMillis() {
+        Date oldest = outboxStore.oldestPending();
+        return oldest == null ? 0 : Math.max(0, System.currentTimeMillis() - oldest.getTime());
+    }
+
+    private void run(String name) {
+        long backoff = pollMillis;
+        while (running) {
+            int claimed = 0;
+            boolean failed;
+            try {
+                List<OrderOutboxEntry> entries = outboxStore.claim(name, batchSize, leaseMillis);
+                claimed = entries.size();
+                failed = !entries.isEmpty() && relay(entries) < entries.size();
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "Outbox relay pass failed", e);
+                failed = true;
+            }
+            if (failed) {
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(backoff));
+            } else {
+                backoff = pollMillis;
+                if (claimed < batchSize) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(pollMillis));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries published
+     */
+    private int relay(List<OrderOutboxEntry> entries) {
+        List<OrderOutboxEntry> sent = entries;
+        try {
+            publisher.publish(entries);
+        } catch (RuntimeException e) {
+            if (entries.size() == 1) {
+                recordFailure(entries.get(0), e);
+                return 0;
+            }
+            log.log(Level.WARNING, "Publishing " + entries.size() + " outbox entries failed, retrying one by one", e);
+            sent = new ArrayList<>(entries.size());
+            for (OrderOutboxEntry entry : entries) {
+                try {
+                    publisher.publish(Collections.singletonList(entry));
+                    sent.add(entry);
+                } catch (RuntimeException single) {
+                    recordFailure(entry, single);
+                }
+            }
+        }
+        if (!sent.isEmpty()) {
+            // a failure here leaves the entries claimed; they are published again once the
+            // lease runs out, and the consumer drops the duplicates
+            markPublished(sent);
+        }
+        return sent.size();
+    }
+
+    private void markPublished(List<OrderOutboxEntry> entries) {
+        Date now = new Date();
+        List<Long> ids = new ArrayList<>(entries.size());
+        long lag = 0;
+        long max = 0;
+        for (OrderOutboxEntry entry : entries) {
+            ids.add(entry.getId());
+            long entryLag = now.getTime() - entry.getCreatedAt().getTime();
+            lag += entryLag;
+            max = Math.max(max, entryLag);
+        }
+        outboxStore.markPublished(ids, now);
+        published.addAndGet(entries.size());
+        batches.incrementAndGet();
+        lagMillis.addAndGet(lag);
+        maxLagMillis.accumulateAndGet(max, Math::max);
+    }
+
+    private void recordFailure(OrderOutboxEntry entry, RuntimeException e) {
+        failedAttempts.incrementAndGet();
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        if (outboxStore.recordFailure(entry.getId(), String.valueOf(cause), maxAttempts)) {
+            givenUp.incrementAndGet();
+            log.log(Level.SEVERE, "Giving up on outbox entry " + entry.getOrderKey() + " after " + maxAttempts
+                    + " attempts", cause);
+        } else {
+            log.log(Level.FINE, "Publishing outbox entry " + entry.getOrderKey() + " failed", cause);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.redhat.coolstore.service;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.TemporalType;
+
+import com.redhat.coolstore.model.Order;
+import com.redhat.coolstore.model.OrderItem;
+import com.redhat.coolstore.model.OrderOutboxEntry;
+import com.redhat.coolstore.utils.OrderMessages;
+
+/**
+ * Reads and updates the order outbox on behalf of checkout and {@link OrderOutboxRelay}.
+ */
+@Stateless
+public class OrderOutboxStore {
+
+    /**
+     * Leases the oldest unclaimed pending entries. Rows another relay is claiming at the same
+     * moment are skipped rather than waited for.
+     */
+    private static final String CLAIM =
+            "UPDATE ORDER_OUTBOX SET claimedBy = :relay, claimedUntil = :until"
+            + " WHERE id IN (SELECT id FROM ORDER_OUTBOX"
+            + " WHERE status = 'PENDING' AND (claimedUntil IS NULL OR claimedUntil < :now)"
+            + " ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED)";
+
+    @Inject
+    Logger log;
+
+    @Inject
+    private EntityManager em;
+
+    @Inject
+    CatalogService catalogService;
+
+    /**
+     * Adds an order message to the outbox in the caller's transaction.
+     */
+    public void enqueue(String orderKey, String format, byte[] payload) {
+        em.persist(new OrderOutboxEntry(orderKey, format, payload));
+    }
+
+    /**
+     * Claims up to {@code limit} pending entries for {@code relay} for {@code leaseMillis}.
+     * The claim is committed before anything is published, so no database locks are held
+     * while the broker is being called, and entries of a relay that dies are picked up by
+     * another once the lease runs out.
+     *
+     * @return the claimed entries in outbox order
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<OrderOutboxEntry> claim(String relay, int limit, long leaseMillis) {
+        Date now = new Date();
+        int claimed = em.createNativeQuery(CLAIM)
+                .setParameter("relay", relay)
+                .setParameter("until", new Date(now.getTime() + leaseMillis), TemporalType.TIMESTAMP)
+                .setParameter("now", now, TemporalType.TIMESTAMP)
+                .setParameter("limit", limit)
+                .executeUpdate();
+        if (claimed == 0) {
+            return Collections.emptyList();
+        }
+        return em.createQuery("SELECT e FROM OrderOutboxEntry e WHERE e.claimedBy = :relay AND e.status = :status"
+                + " ORDER BY e.id", OrderOutboxEntry.class)
+                .setParameter("relay", relay)
+                .setParameter("status", OrderOutboxEntry.PENDING)
+                .getResultList();
+    }
+
+    /**
+     * Marks entries published and releases their claim.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int markPublished(List<Long> ids, Date publishedAt) {
+        return em.createQuery("UPDATE OrderOutboxEntry e SET e.status = :published, e.publishedAt = :at,"
+                + " e.claimedBy = NULL, e.claimedUntil = NULL WHERE e.id IN :ids AND e.status = :pending")
+                .setParameter("published", OrderOutboxEntry.PUBLISHED)
+                .setParameter("at", publishedAt, TemporalType.TIMESTAMP)
+                .setParameter("ids", ids)
+                .setParameter("pending", OrderOutboxEntry.PENDING)
+                .executeUpdate();
+    }
+
+    /**
+     * Counts a failed attempt to publish an entry and releases its claim, giving up on the
+     * entry after {@code maxAttempts}.
+     *
+     * A failed attempt may still have handed the message to the broker, for instance when
+     * the send timed out. An entry given up on whose order is already stored is therefore
+     * marked {@link OrderOutboxEntry#RECONCILE} and its stock left alone. Otherwise it is
+     * marked failed and its stock put back in the same transaction; should the message still
+     * arrive, {@link OrderBatchWriter} sees the failed entry and takes the stock out again.
+     * The entry row is locked first, so this and the storing of the order never overlap.
+     *
+     * @return whether the entry has now been given up on
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public boolean recordFailure(long id, String error, int maxAttempts) {
+        OrderOutboxEntry entry = em.find(OrderOutboxEntry.class, id, LockModeType.PESSIMISTIC_WRITE);
+        if (entry == null || !OrderOutboxEntry.PENDING.equals(entry.getStatus())) {
+            return false;
+        }
+        entry.setAttempts(entry.getAttempts() + 1);
+        entry.setLastError(error == null || error.length() <= 255 ? error : error.substring(0, 255));
+        entry.setClaimedBy(null);
+        entry.setClaimedUntil(null);
+        if (entry.getAttempts() >= maxAttempts) {
+            if (isStored(entry.getOrderKey())) {
+                entry.setStatus(OrderOutboxEntry.RECONCILE);
+                log.warning("Outbox entry " + entry.getOrderKey() + " was given up on but its order is stored,"
+                        + " leaving its stock as it is for reconciliation");
+            } else {
+                entry.setStatus(OrderOutboxEntry.FAILED);
+                releaseStock(entry);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isStored(String orderKey) {
+        return !em.createQuery("SELECT o.orderId FROM Order o WHERE o.orderKey = :key", Long.class)
+                .setParameter("key", orderKey)
+                .setMaxResults(1)
+                .getResultList()
+                .isEmpty();
+    }
+
+    private void releaseStock(OrderOutboxEntry entry) {
+        Order order;
+        try {
+            order = OrderMessages.decode(entry.getFormat(), entry.getPayload());
+        } catch (RuntimeException e) {
+            log.log(Level.SEVERE, "Unable to read failed outbox entry " + entry.getOrderKey()
+                    + ", its stock has to be put back by hand", e);
+            return;
+        }
+        Map<String, Integer> returned = new HashMap<>();
+        for (OrderItem item : order.getItemList()) {
+            returned.merge(item.getProductId(), -item.getQuantity(), Integer::sum);
+        }
+        catalogService.updateInventoryItems(returned);
+        log.warning("Put back the stock of failed order " + entry.getOrderKey() + ": " + returned);
+    }
+
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public long countPending() {
+        return em.createQuery("SELECT COUNT(e) FROM OrderOutboxEntry e WHERE e.status = :status", Long.class)
+                .setParameter("status", OrderOutboxEntry.PENDING)
+                .getSingleResult();
+    }
+
+    /**
+     * Creation time of the oldest entry still waiting to be published, or {@code null}.
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public Date oldestPending() {
+        return em.createQuery("SELECT MIN(e.createdAt) FROM OrderOutboxEntry e WHERE e.status = :status", Date.class)
+                .setParameter("status", OrderOutboxEntry.PENDING)
+                .getSingleResult();
+    }
+}
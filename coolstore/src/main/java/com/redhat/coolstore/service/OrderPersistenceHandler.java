@@ -0,0 +1,30 @@
+package com.redhat.coolstore.service;
+
+import java.util.concurrent.CompletionStage;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import com.redhat.coolstore.model.OrderEvent;
+
+@ApplicationScoped
+public class OrderPersistenceHandler implements OrderEventHandler {
+
+    @Inject
+    OrderIngestionBatcher orderIngestionBatcher;
+
+    @Override
+    public String getName() {
+        return "persistence";
+    }
+
+    @Override
+    public boolean isStore() {
+        return true;
+    }
+
+    @Override
+    public CompletionStage<?> onOrder(OrderEvent event) {
+        return orderIngestionBatcher.submit(event);
+    }
+}
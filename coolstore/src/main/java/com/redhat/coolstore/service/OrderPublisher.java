@@ -0,0 +1,20 @@
+package com.redhat.coolstore.service;
+
+import java.util.List;
+
+import com.redhat.coolstore.model.OrderOutboxEntry;
+
+/**
+ * Where {@link OrderOutboxRelay} sends claimed outbox entries. The relay uses the publisher
+ * whose name matches {@code coolstore.outbox.broker}.
+ */
+public interface OrderPublisher {
+
+    String getName();
+
+    /**
+     * Hands the entries to the broker as one unit: when this returns all of them have been
+     * accepted, and when it throws the relay assumes none were.
+     */
+    void publish(List<OrderOutboxEntry> entries);
+}
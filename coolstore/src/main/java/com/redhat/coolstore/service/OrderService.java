@@ -1,15 +1,15 @@
 package com.redhat.coolstore.service;
 
-import com.enterprise.audit.logging.config.AuditConfiguration;
-import com.enterprise.audit.logging.exception.AuditLoggingException;
-import com.enterprise.audit.logging.service.FileSystemAuditLogger;
 import com.redhat.coolstore.model.Order;
+import com.redhat.coolstore.model.OrderOutboxEntry;
+import com.redhat.coolstore.model.OrderStatus;
+import com.redhat.coolstore.utils.KeysetStream;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
@@ -23,6 +23,9 @@ public class OrderService {
   @Inject
   private EntityManager em;
 
+  @Resource
+  private SessionContext context;
+
   public void save(Order order) {
     em.persist(order);
   }
@@ -35,27 +38,55 @@ public class OrderService {
     return em.createQuery(criteria).getResultList();
   }
 
-  public Order getOrderById(long id) {
-    return em.find(Order.class, id);
+  /**
+   * Returns up to {@code limit} orders with their items, ordered by id and starting after
+   * {@code afterOrderId}. Ids are selected first so that the item fetch join is not paginated.
+   */
+  public List<Order> getOrders(long afterOrderId, int limit) {
+    List<Long> ids = em.createQuery("SELECT o.orderId FROM Order o WHERE o.orderId > :after ORDER BY o.orderId", Long.class)
+        .setParameter("after", afterOrderId)
+        .setHint(CatalogService.FETCH_SIZE_HINT, limit)
+        .setMaxResults(limit)
+        .getResultList();
+    if (ids.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return em.createQuery("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.itemList WHERE o.orderId IN :ids ORDER BY o.orderId", Order.class)
+        .setParameter("ids", ids)
+        .getResultList();
   }
 
-  private FileSystemAuditLogger auditLogger;
-
-  @PostConstruct
-  public void init() throws AuditLoggingException {
-    // Initialize audit logger
-    AuditConfiguration config = new AuditConfiguration();
-    config.setLogDirectory("./device-inventory-audit-logs");
-    config.setAutoCreateDirectory(true);
-    auditLogger = new FileSystemAuditLogger(config);
+  /**
+   * Streams all orders one page of {@code fetchSize} orders at a time; see
+   * {@link CatalogService#streamCatalogItems(int)} for how pages are released.
+   */
+  public Stream<Order> streamOrders(int fetchSize) {
+    OrderService self = context.getBusinessObject(OrderService.class);
+    return KeysetStream.of(0L, fetchSize, after -> self.getOrders(after, fetchSize), Order::getOrderId);
+  }
 
+  public Order getOrderById(long id) {
+    return em.find(Order.class, id);
   }
 
-  @PreDestroy
-  public void cleanup() throws AuditLoggingException {
-    if (auditLogger != null) {
-      auditLogger.close();
+  /**
+   * Looks up an order accepted at checkout by its key, first among stored orders and then
+   * in the outbox. Returns {@code null} if the key is unknown.
+   */
+  public OrderStatus getOrderStatus(String orderKey) {
+    List<Long> stored = em.createQuery("SELECT o.orderId FROM Order o WHERE o.orderKey = :key", Long.class)
+        .setParameter("key", orderKey)
+        .getResultList();
+    if (!stored.isEmpty()) {
+      return new OrderStatus(orderKey, OrderStatus.COMPLETED, stored.get(0), 0, null);
     }
+    List<OrderOutboxEntry> queued = em.createQuery("SELECT e FROM OrderOutboxEntry e WHERE e.orderKey = :key", OrderOutboxEntry.class)
+        .setParameter("key", orderKey)
+        .getResultList();
+    if (queued.isEmpty()) {
+      return null;
+    }
+    OrderOutboxEntry entry = queued.get(0);
+    return new OrderStatus(orderKey, entry.getStatus(), null, entry.getAttempts(), entry.getLastError());
   }
-
-}
\ No newline at end of file
+}
@@ -1,47 +1,63 @@
 package com.redhat.coolstore.service;
 
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 import javax.ejb.ActivationConfigProperty;
 import javax.ejb.MessageDriven;
 import javax.inject.Inject;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageListener;
-import javax.jms.TextMessage;
 
 import com.redhat.coolstore.model.Order;
-import com.redhat.coolstore.utils.Transformers;
+import com.redhat.coolstore.model.OrderEvent;
+import com.redhat.coolstore.utils.OrderMessages;
 
 @MessageDriven(name = "OrderServiceMDB", activationConfig = {
 	@ActivationConfigProperty(propertyName = "destinationLookup", propertyValue = "topic/orders"),
 	@ActivationConfigProperty(propertyName = "destinationType", propertyValue = "javax.jms.Topic"),
-	@ActivationConfigProperty(propertyName = "acknowledgeMode", propertyValue = "Auto-acknowledge")})
+	@ActivationConfigProperty(propertyName = "acknowledgeMode", propertyValue = "Auto-acknowledge"),
+	// each session waits for its order's batch to commit, so enough sessions are needed to
+	// fill a batch of coolstore.orders.batchSize (50 by default) within the batch wait
+	@ActivationConfigProperty(propertyName = "maxSession", propertyValue = "50"),
+	// without this every session on a topic gets a subscription of its own and each order
+	// would be delivered once per session; shared, the sessions split the messages
+	@ActivationConfigProperty(propertyName = "shareSubscriptions", propertyValue = "true")})
 public class OrderServiceMDB implements MessageListener { 
 
 	@Inject
-	OrderService orderService;
+	Logger log;
 
 	@Inject
-	CatalogService catalogService;
+	OrderEventDispatcher orderEventDispatcher;
 
 	@Override
 	public void onMessage(Message rcvMessage) {
-		System.out.println("\nMessage recd !");
-		TextMessage msg = null;
 		try {
-				if (rcvMessage instanceof TextMessage) {
-						msg = (TextMessage) rcvMessage;
-						String orderStr = msg.getBody(String.class);
-						System.out.println("Received order: " + orderStr);
-						Order order = Transformers.jsonToOrder(orderStr);
-						System.out.println("Order object is " + order);
-						orderService.save(order);
-						order.getItemList().forEach(orderItem -> {
-							catalogService.updateInventoryItems(orderItem.getProductId(), orderItem.getQuantity());
-						});
+				Order order = OrderMessages.toOrder(rcvMessage);
+				if (order != null) {
+						order.setOrderKey(orderKeyOf(rcvMessage));
+						if (log.isLoggable(Level.FINE)) {
+								log.fine("Received order " + order);
+						}
+						// parsed once and shared by all handlers; the message is only
+						// acknowledged once every handler, including persistence, is done
+						boolean reserved = rcvMessage.getBooleanProperty(OrderMessages.INVENTORY_RESERVED_PROPERTY);
+						orderEventDispatcher.dispatch(OrderEvent.of(order, reserved)).get();
 				}
-		} catch (JMSException e) {
+		} catch (JMSException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			throw new RuntimeException(e);
 		}
 	}
 
-}
\ No newline at end of file
+	private static String orderKeyOf(Message msg) throws JMSException {
+		String key = msg.getStringProperty(OrderMessages.ORDER_KEY_PROPERTY);
+		return key != null ? key : msg.getJMSMessageID();
+	}
+
+}
@@ -0,0 +1,237 @@
+package com.redhat.coolstore.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+
+import com.redhat.coolstore.model.CatalogItemEntity;
+import com.redhat.coolstore.model.Product;
+import com.redhat.coolstore.utils.Transformers;
+
+/**
+ * Read-through cache of {@link Product} views over the catalog.
+ *
+ * The whole catalog is loaded once at startup. Entries expire after
+ * {@code coolstore.catalog.ttlSeconds} and at most {@code coolstore.catalog.maxEntries}
+ * products are kept; an item is dropped as soon as a transaction that changed its
+ * inventory commits. Cached products are shared between callers, so they are frozen
+ * ({@link Product#freeze()}) and any setter called on them throws.
+ */
+@Singleton
+@Startup
+@DependsOn("DataBaseMigrationStartup")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ProductCatalogCache {
+
+    @Inject
+    Logger log;
+
+    @Inject
+    CatalogService catalogService;
+
+    private final long ttlMillis = TimeUnit.SECONDS.toMillis(Long.getLong("coolstore.catalog.ttlSeconds", 300L));
+
+    private final int maxEntries = Integer.getInteger("coolstore.catalog.maxEntries", 10_000);
+
+    private final Map<String, Entry> products = new ConcurrentHashMap<>();
+
+    private volatile ProductList allProducts;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadNanos = new AtomicLong();
+
+    @PostConstruct
+    void warmUp() {
+        try {
+            getProducts();
+            log.info("Catalog cache warmed up with " + products.size() + " products");
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Catalog cache warm-up failed, loading on demand", e);
+        }
+    }
+
+    public List<Product> getProducts() {
+        ProductList current = allProducts;
+        if (current != null && !isExpired(current.loadedAt)) {
+            hits.incrementAndGet();
+            return current.products;
+        }
+        misses.incrementAndGet();
+
+        long start = System.nanoTime();
+        List<Product> loaded = new ArrayList<>();
+        for (CatalogItemEntity entity : catalogService.getCatalogItems()) {
+            loaded.add(Transformers.toProduct(entity).freeze());
+        }
+        recordLoad(start);
+
+        long now = System.currentTimeMillis();
+        for (Product product : loaded) {
+            put(product, now);
+        }
+        current = new ProductList(Collections.unmodifiableList(loaded), now);
+        allProducts = current;
+        return current.products;
+    }
+
+    public Product getProduct(String itemId) {
+        Entry entry = products.get(itemId);
+        if (entry != null && !isExpired(entry.loadedAt)) {
+            hits.incrementAndGet();
+            return entry.product;
+        }
+        misses.incrementAndGet();
+
+        long start = System.nanoTime();
+        CatalogItemEntity entity = catalogService.getCatalogItemById(itemId);
+        Product product = entity == null ? null : Transformers.toProduct(entity).freeze();
+        recordLoad(start);
+
+        if (product != null) {
+            put(product, System.currentTimeMillis());
+        }
+        return product;
+    }
+
+    /**
+     * Looks up several products at once; those not cached are loaded with a single query.
+     * Unknown items are left out of the returned map.
+     */
+    public Map<String, Product> getProducts(Collection<String> itemIds) {
+        Map<String, Product> found = new HashMap<>(itemIds.size() * 2);
+        Set<String> missing = new LinkedHashSet<>();
+        for (String itemId : itemIds) {
+            Entry entry = products.get(itemId);
+            if (entry != null && !isExpired(entry.loadedAt)) {
+                found.put(itemId, entry.product);
+            } else {
+                missing.add(itemId);
+            }
+        }
+        hits.addAndGet(found.size());
+        if (missing.isEmpty()) {
+            return found;
+        }
+        misses.addAndGet(missing.size());
+
+        long start = System.nanoTime();
+        List<Product> loaded = new ArrayList<>(missing.size());
+        for (CatalogItemEntity entity : catalogService.getCatalogItemsById(missing)) {
+            loaded.add(Transformers.toProduct(entity).freeze());
+        }
+        recordLoad(start);
+
+        long now = System.currentTimeMillis();
+        for (Product product : loaded) {
+            put(product, now);
+            found.put(product.getItemId(), product);
+        }
+        return found;
+    }
+
+    public void invalidate(String itemId) {
+        products.remove(itemId);
+        allProducts = null;
+    }
+
+    public void invalidateAll() {
+        products.clear();
+        allProducts = null;
+    }
+
+    public void onInventoryChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) InventoryChangedEvent event) {
+        invalidate(event.getItemId());
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getLoads() {
+        return loads.get();
+    }
+
+    public double getAverageLoadMillis() {
+        long count = loads.get();
+        return count == 0 ? 0 : loadNanos.get() / (count * 1_000_000.0);
+    }
+
+    public int getSize() {
+        return products.size();
+    }
+
+    private void put(Product product, long now) {
+        if (products.size() >= maxEntries && !products.containsKey(product.getItemId())) {
+            purgeExpired();
+            if (products.size() >= maxEntries) {
+                return;
+            }
+        }
+        products.put(product.getItemId(), new Entry(product, now));
+    }
+
+    private void purgeExpired() {
+        Iterator<Entry> it = products.values().iterator();
+        while (it.hasNext()) {
+            if (isExpired(it.next().loadedAt)) {
+                it.remove();
+            }
+        }
+    }
+
+    private boolean isExpired(long loadedAt) {
+        return System.currentTimeMillis() - loadedAt > ttlMillis;
+    }
+
+    private void recordLoad(long startNanos) {
+        loads.incrementAndGet();
+        loadNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+
+    private static final class Entry {
+        final Product product;
+        final long loadedAt;
+
+        Entry(Product product, long loadedAt) {
+            this.product = product;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static final class ProductList {
+        final List<Product> products;
+        final long loadedAt;
+
+        ProductList(List<Product> products, long loadedAt) {
+            this.products = products;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -1,58 +1,49 @@
 package com.redhat.coolstore.service;
 
-import com.enterprise.audit.logging.config.AuditConfiguration;
-import com.enterprise.audit.logging.exception.AuditLoggingException;
-import com.enterprise.audit.logging.service.FileSystemAuditLogger;
-import com.redhat.coolstore.model.CatalogItemEntity;
 import com.redhat.coolstore.model.Product;
-import com.redhat.coolstore.utils.Transformers;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
+import com.enterprise.audit.logging.model.AuditResult;
+
 import javax.ejb.Stateless;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
 import javax.inject.Inject;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
-
-import static com.redhat.coolstore.utils.Transformers.toProduct;
+import java.util.Map;
 
 @Stateless
 public class ProductService {
 
     @Inject
-    CatalogService cm;
+    ProductCatalogCache catalogCache;
+
+    @Inject
+    AuditWriter auditWriter;
 
     public ProductService() {
     }
 
     public List<Product> getProducts() {
-        return cm.getCatalogItems().stream().map(entity -> toProduct(entity)).collect(Collectors.toList());
+        return catalogCache.getProducts();
     }
 
     public Product getProductByItemId(String itemId) {
-        CatalogItemEntity entity = cm.getCatalogItemById(itemId);
-        if (entity == null)
-            return null;
+        return catalogCache.getProduct(itemId);
+    }
 
-        // Return the entity
-        return Transformers.toProduct(entity);
+    /**
+     * Returns the known products among the given items, keyed by itemId.
+     */
+    public Map<String, Product> getProductsByItemIds(Collection<String> itemIds) {
+        return catalogCache.getProducts(itemIds);
     }
-  private FileSystemAuditLogger auditLogger;
-
-  @PostConstruct
-  public void init() throws AuditLoggingException {
-    // Initialize audit logger
-    AuditConfiguration config = new AuditConfiguration();
-    config.setLogDirectory("./device-inventory-audit-logs");
-    config.setAutoCreateDirectory(true);
-    auditLogger = new FileSystemAuditLogger(config);
-
-  }
-
-  @PreDestroy
-  public void cleanup() throws AuditLoggingException {
-    if (auditLogger != null) {
-      auditLogger.close();
+
+    /**
+     * Records every committed stock change of a product in the audit log.
+     */
+    public void onInventoryChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) InventoryChangedEvent event) {
+        auditWriter.log("INVENTORY", "UPDATE", "product/" + event.getItemId(), AuditResult.SUCCESS,
+                event.getQuantity() != null ? "Quantity left " + event.getQuantity() : "Stock deducted");
     }
-  }
 }
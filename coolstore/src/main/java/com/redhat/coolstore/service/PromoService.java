@@ -1,13 +1,12 @@
 package com.redhat.coolstore.service;
 
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import javax.enterprise.context.ApplicationScoped;
 
+import com.redhat.coolstore.model.Money;
 import com.redhat.coolstore.model.Promotion;
 import com.redhat.coolstore.model.ShoppingCart;
 import com.redhat.coolstore.model.ShoppingCartItem;
@@ -21,40 +20,62 @@ public class PromoService implements Serializable {
 
     private Set<Promotion> promotionSet = null;
 
+    private volatile PromotionIndex promotionIndex = PromotionIndex.EMPTY;
+
     public PromoService() {
 
         promotionSet = new HashSet<>();
 
         promotionSet.add(new Promotion("329299", .25));
 
+        promotionIndex = PromotionIndex.of(promotionSet);
+
     }
 
     public void applyCartItemPromotions(ShoppingCart shoppingCart) {
 
         if (shoppingCart != null && shoppingCart.getShoppingCartItemList().size() > 0) {
 
-            Map<String, Promotion> promoMap = new HashMap<String, Promotion>();
+            PromotionIndex index = promotionIndex;
 
-            for (Promotion promo : getPromotions()) {
+            long now = System.currentTimeMillis();
 
-                promoMap.put(promo.getItemId(), promo);
+            for (ShoppingCartItem sci : shoppingCart.getShoppingCartItemList()) {
+
+                applyPromotion(index, sci, now);
 
             }
 
-            for (ShoppingCartItem sci : shoppingCart.getShoppingCartItemList()) {
+        }
 
-                String productId = sci.getProduct().getItemId();
+    }
 
-                Promotion promo = promoMap.get(productId);
+    /**
+     * Applies the promotion for a single cart line, leaving every other line untouched.
+     */
+    public void applyCartItemPromotion(ShoppingCartItem sci) {
 
-                if (promo != null) {
+        if (sci != null) {
 
-                    sci.setPromoSavings(sci.getProduct().getPrice() * promo.getPercentOff() * -1);
-                    sci.setPrice(sci.getProduct().getPrice() * (1 - promo.getPercentOff()));
+            applyPromotion(promotionIndex, sci, System.currentTimeMillis());
 
-                }
+        }
 
-            }
+    }
+
+    private static void applyPromotion(PromotionIndex index, ShoppingCartItem sci, long now) {
+
+        String productId = sci.getProduct().getItemId();
+
+        long basisPointsOff = index.basisPointsOff(productId, sci.getQuantity(), now);
+
+        if (basisPointsOff > 0) {
+
+            long listPrice = Money.ofDollars(sci.getProduct().getPrice());
+            long savings = Money.percentOf(listPrice, basisPointsOff);
+
+            sci.setPromoSavingsCents(-savings);
+            sci.setPriceCents(listPrice - savings);
 
         }
 
@@ -65,10 +86,10 @@ public class PromoService implements Serializable {
         if (shoppingCart != null) {
 
             //PROMO: if cart total is greater than 75, free shipping
-            if (shoppingCart.getCartItemTotal() >= 75) {
+            if (shoppingCart.getCartItemTotalCents() >= 75_00) {
 
-                shoppingCart.setShippingPromoSavings(shoppingCart.getShippingTotal() * -1);
-                shoppingCart.setShippingTotal(0);
+                shoppingCart.setShippingPromoSavingsCents(-shoppingCart.getShippingTotalCents());
+                shoppingCart.setShippingTotalCents(0);
 
             }
 
@@ -88,17 +109,12 @@ public class PromoService implements Serializable {
 
     }
 
-    public void setPromotions(Set<Promotion> promotionSet) {
-
-        if (promotionSet != null) {
-
-            this.promotionSet = new HashSet<>(promotionSet);
+    public synchronized void setPromotions(Set<Promotion> promotionSet) {
 
-        } else {
+        Set<Promotion> promotions = promotionSet != null ? new HashSet<>(promotionSet) : new HashSet<Promotion>();
 
-            this.promotionSet = new HashSet<>();
-
-        }
+        this.promotionIndex = PromotionIndex.of(promotions);
+        this.promotionSet = promotions;
 
     }
 
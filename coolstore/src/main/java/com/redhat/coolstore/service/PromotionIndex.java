@@ -0,0 +1,91 @@
+package com.redhat.coolstore.service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.redhat.coolstore.model.Money;
+import com.redhat.coolstore.model.Promotion;
+
+/**
+ * Read-only view of a promotion set, grouped by itemId.
+ *
+ * Built once per {@link PromoService#setPromotions} call; each rule captures the
+ * promotion's fields at build time so later changes to the caller's
+ * {@link Promotion} objects do not leak into pricing.
+ */
+final class PromotionIndex implements Serializable {
+
+    private static final long serialVersionUID = 4193652074420719364L;
+
+    static final PromotionIndex EMPTY = new PromotionIndex(Collections.<String, Rule[]>emptyMap());
+
+    private final Map<String, Rule[]> rulesByItem;
+
+    private PromotionIndex(Map<String, Rule[]> rulesByItem) {
+        this.rulesByItem = rulesByItem;
+    }
+
+    static PromotionIndex of(Collection<Promotion> promotions) {
+        Map<String, List<Rule>> grouped = new HashMap<>();
+        for (Promotion promo : promotions) {
+            if (promo == null || promo.getItemId() == null) {
+                continue;
+            }
+            List<Rule> rules = grouped.get(promo.getItemId());
+            if (rules == null) {
+                rules = new ArrayList<>(1);
+                grouped.put(promo.getItemId(), rules);
+            }
+            rules.add(new Rule(promo));
+        }
+        Map<String, Rule[]> index = new HashMap<>(grouped.size() * 2);
+        for (Map.Entry<String, List<Rule>> e : grouped.entrySet()) {
+            index.put(e.getKey(), e.getValue().toArray(new Rule[0]));
+        }
+        return new PromotionIndex(index);
+    }
+
+    /**
+     * Returns the largest discount, in basis points, that applies to a cart line, or 0 if
+     * none does.
+     */
+    long basisPointsOff(String itemId, int quantity, long now) {
+        Rule[] rules = rulesByItem.get(itemId);
+        if (rules == null) {
+            return 0;
+        }
+        long best = 0;
+        for (Rule rule : rules) {
+            if (rule.basisPointsOff > best && rule.appliesTo(quantity, now)) {
+                best = rule.basisPointsOff;
+            }
+        }
+        return best;
+    }
+
+    private static final class Rule implements Serializable {
+
+        private static final long serialVersionUID = 6247785100391829712L;
+
+        final long basisPointsOff;
+        final int minQuantity;
+        final long validFrom;
+        final long validUntil;
+
+        Rule(Promotion promo) {
+            this.basisPointsOff = Money.basisPoints(promo.getPercentOff());
+            this.minQuantity = promo.getMinQuantity();
+            this.validFrom = promo.getValidFrom() != null ? promo.getValidFrom().getTime() : Long.MIN_VALUE;
+            this.validUntil = promo.getValidUntil() != null ? promo.getValidUntil().getTime() : Long.MAX_VALUE;
+        }
+
+        boolean appliesTo(int quantity, long now) {
+            return quantity >= minQuantity && now >= validFrom && now < validUntil;
+        }
+    }
+}
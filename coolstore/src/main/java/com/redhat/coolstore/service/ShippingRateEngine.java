@@ -0,0 +1,114 @@
+package com.redhat.coolstore.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+
+import com.redhat.coolstore.model.ShoppingCart;
+
+/**
+ * Holds the active {@link ShippingRateTable}.
+ *
+ * The table is loaded from {@code shipping-rates.properties} on the classpath, or from
+ * the file named by {@code coolstore.shipping.rates} when set, and replaced as a whole
+ * whenever that file changes so readers never observe a partially updated set of tiers.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ShippingRateEngine {
+
+    private static final String DEFAULT_RATES = "/shipping-rates.properties";
+
+    @Inject
+    Logger log;
+
+    private final String ratesFile = System.getProperty("coolstore.shipping.rates");
+
+    private volatile ShippingRateTable rates;
+
+    private volatile long ratesLastModified;
+
+    @PostConstruct
+    void init() {
+        reload();
+    }
+
+    public ShippingRateTable getRates() {
+        return rates;
+    }
+
+    public void setRates(ShippingRateTable rates) {
+        this.rates = rates;
+    }
+
+    @Schedule(hour = "*", minute = "*", persistent = false)
+    public void reloadIfChanged() {
+        if (ratesFile != null && new File(ratesFile).lastModified() != ratesLastModified) {
+            reload();
+        }
+    }
+
+    public synchronized void reload() {
+        Properties props = new Properties();
+        try (InputStream in = openRates()) {
+            props.load(in);
+            rates = ShippingRateTable.fromProperties(props);
+            log.info("Loaded shipping rates from " + (ratesFile != null ? ratesFile : DEFAULT_RATES));
+        } catch (IOException | IllegalArgumentException e) {
+            if (rates == null) {
+                throw new IllegalStateException("Unable to load shipping rates", e);
+            }
+            log.log(Level.WARNING, "Keeping previous shipping rates, reload failed", e);
+        }
+    }
+
+    /**
+     * Prices a batch of item totals, given in cents, against one consistent rate table.
+     * Insurance is only added from the first insurance tier upwards, as for a single cart.
+     */
+    public void priceAll(long[] itemTotalsCents, long[] shippingCents, long[] insuranceCents) {
+        ShippingRateTable table = rates;
+        for (int i = 0; i < itemTotalsCents.length; i++) {
+            shippingCents[i] = table.shippingCents(itemTotalsCents[i]);
+            insuranceCents[i] = table.insuranceCents(itemTotalsCents[i]);
+        }
+    }
+
+    public long[] priceAll(List<ShoppingCart> carts) {
+        ShippingRateTable table = rates;
+        long[] totals = new long[carts.size()];
+        for (int i = 0; i < totals.length; i++) {
+            long itemTotal = carts.get(i).getCartItemTotalCents();
+            totals[i] = table.shippingCents(itemTotal) + table.insuranceCents(itemTotal);
+        }
+        return totals;
+    }
+
+    private InputStream openRates() throws IOException {
+        if (ratesFile != null) {
+            File file = new File(ratesFile);
+            ratesLastModified = file.lastModified();
+            return new FileInputStream(file);
+        }
+        InputStream in = ShippingRateEngine.class.getResourceAsStream(DEFAULT_RATES);
+        if (in == null) {
+            throw new IOException(DEFAULT_RATES + " not found on the classpath");
+        }
+        return in;
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.redhat.coolstore.service;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import com.redhat.coolstore.model.Money;
+
+/**
+ * Immutable shipping and insurance tiers in integer cents.
+ *
+ * Tier lower bounds are kept sorted so a cart total is placed with a binary
+ * search; lookups touch only primitive arrays and never allocate.
+ */
+public final class ShippingRateTable {
+
+    private final long[] shippingBounds;
+    private final long[] shippingFees;
+    private final long[] insuranceBounds;
+    private final long[] insuranceBasisPoints;
+
+    ShippingRateTable(long[] shippingBounds, long[] shippingFees, long[] insuranceBounds, long[] insuranceBasisPoints) {
+        this.shippingBounds = shippingBounds;
+        this.shippingFees = shippingFees;
+        this.insuranceBounds = insuranceBounds;
+        this.insuranceBasisPoints = insuranceBasisPoints;
+    }
+
+    /**
+     * Reads {@code shipping.tiers} and {@code insurance.tiers}, each a comma separated
+     * list of {@code bound:value} pairs as described in {@code shipping-rates.properties}.
+     */
+    public static ShippingRateTable fromProperties(Properties props) {
+        long[][] shipping = parseTiers(props.getProperty("shipping.tiers", ""), true);
+        long[][] insurance = parseTiers(props.getProperty("insurance.tiers", ""), false);
+        return new ShippingRateTable(shipping[0], shipping[1], insurance[0], insurance[1]);
+    }
+
+    public long shippingCents(long itemTotalCents) {
+        int tier = tierOf(shippingBounds, itemTotalCents);
+        return tier < 0 ? 0 : shippingFees[tier];
+    }
+
+    public long insuranceCents(long itemTotalCents) {
+        int tier = tierOf(insuranceBounds, itemTotalCents);
+        if (tier < 0) {
+            return 0;
+        }
+        // round half up, matching the previous BigDecimal scale-2 rounding
+        return Money.percentOf(itemTotalCents, insuranceBasisPoints[tier]);
+    }
+
+    private static int tierOf(long[] bounds, long cents) {
+        int i = Arrays.binarySearch(bounds, cents);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    private static long[][] parseTiers(String spec, boolean valuesInDollars) {
+        String[] entries = spec.trim().isEmpty() ? new String[0] : spec.split(",");
+        long[] bounds = new long[entries.length];
+        long[] values = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            String[] pair = entries[i].trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid rate tier '" + entries[i] + "'");
+            }
+            bounds[i] = Money.ofDollars(Double.parseDouble(pair[0].trim()));
+            values[i] = valuesInDollars ? Money.ofDollars(Double.parseDouble(pair[1].trim())) : Long.parseLong(pair[1].trim());
+            if (i > 0 && bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Rate tiers must be in ascending order: " + spec);
+            }
+        }
+        return new long[][] {bounds, values};
+    }
+
+}
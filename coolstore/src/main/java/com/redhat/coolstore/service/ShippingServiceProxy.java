@@ -0,0 +1,94 @@
+package com.redhat.coolstore.service;
+
+import java.util.Hashtable;
+import java.util.logging.Logger;
+
+import javax.ejb.EJBException;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+import com.redhat.coolstore.model.ShoppingCart;
+
+/**
+ * Resolves the {@link ShippingServiceRemote} once and reuses it for every pricing call.
+ *
+ * The in-process bean bound under {@code java:module} is preferred so that a
+ * co-deployed {@link ShippingService} is called without going through the remote
+ * naming client. When a call fails with an {@link EJBException} the cached
+ * reference is dropped, re-resolved and the call is retried once.
+ */
+@ApplicationScoped
+public class ShippingServiceProxy implements ShippingServiceRemote {
+
+    private static final String LOCAL_NAME = "java:module/ShippingService!" + ShippingServiceRemote.class.getName();
+
+    private static final String REMOTE_NAME = "ejb:/ROOT/ShippingService!" + ShippingServiceRemote.class.getName();
+
+    @Inject
+    Logger log;
+
+    private volatile ShippingServiceRemote delegate;
+
+    @Override
+    public double calculateShipping(ShoppingCart sc) {
+        try {
+            return delegate().calculateShipping(sc);
+        } catch (EJBException e) {
+            invalidate(e);
+            return delegate().calculateShipping(sc);
+        }
+    }
+
+    @Override
+    public double calculateShippingInsurance(ShoppingCart sc) {
+        try {
+            return delegate().calculateShippingInsurance(sc);
+        } catch (EJBException e) {
+            invalidate(e);
+            return delegate().calculateShippingInsurance(sc);
+        }
+    }
+
+    private ShippingServiceRemote delegate() {
+        ShippingServiceRemote current = delegate;
+        if (current == null) {
+            synchronized (this) {
+                current = delegate;
+                if (current == null) {
+                    current = resolve();
+                    delegate = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private synchronized void invalidate(EJBException cause) {
+        log.warning("Shipping service call failed, re-resolving: " + cause.getMessage());
+        delegate = null;
+    }
+
+    private ShippingServiceRemote resolve() {
+        try {
+            ShippingServiceRemote local = (ShippingServiceRemote) new InitialContext().lookup(LOCAL_NAME);
+            log.info("Using in-process shipping service");
+            return local;
+        } catch (NamingException e) {
+            log.fine("No in-process shipping service bound at " + LOCAL_NAME);
+        }
+        try {
+            final Hashtable<String, String> jndiProperties = new Hashtable<>();
+            jndiProperties.put(Context.INITIAL_CONTEXT_FACTORY, "org.wildfly.naming.client.WildFlyInitialContextFactory");
+
+            final Context context = new InitialContext(jndiProperties);
+
+            log.info("Using remote shipping service " + REMOTE_NAME);
+            return (ShippingServiceRemote) context.lookup(REMOTE_NAME);
+        } catch (NamingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
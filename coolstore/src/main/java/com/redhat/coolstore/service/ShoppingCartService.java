@@ -1,19 +1,24 @@
 package com.redhat.coolstore.service;
 
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
-import javax.ejb.Stateful;
+import javax.ejb.Stateless;
 import javax.inject.Inject;
-import javax.naming.Context;
-import javax.naming.InitialContext;
-import javax.naming.NamingException;
 
+import com.redhat.coolstore.model.CartOperation;
+import com.redhat.coolstore.model.CartOperationResult;
+import com.redhat.coolstore.model.Money;
 import com.redhat.coolstore.model.Product;
 import com.redhat.coolstore.model.ShoppingCart;
 import com.redhat.coolstore.model.ShoppingCartItem;
 
-@Stateful
+@Stateless
 public class ShoppingCartService  {
 
     @Inject
@@ -25,84 +30,302 @@ public class ShoppingCartService  {
     @Inject
     PromoService ps;
 
+    @Inject
+    ShippingServiceProxy shippingService;
+
 
     @Inject
-    ShoppingCartOrderProcessor shoppingCartOrderProcessor;
+    CheckoutPipeline checkoutPipeline;
 
-    private ShoppingCart cart  = new ShoppingCart(); //Each user can have multiple shopping carts (tabbed browsing)
+    private final long checkoutBudgetMillis = Long.getLong("coolstore.checkout.budgetMillis", 250L);
 
-   
+    @Inject
+    ShoppingCartStore shoppingCartStore; //Each user can have multiple shopping carts (tabbed browsing)
 
     public ShoppingCartService() {
     }
 
     public ShoppingCart getShoppingCart(String cartId) {
-        return cart;
+        return shoppingCartStore.getOrCreate(cartId);
+    }
+
+    /**
+     * Returns the cart for the given id, or null if there is none. Unlike
+     * {@link #getShoppingCart(String)} this does not create and store an empty cart.
+     */
+    public ShoppingCart findShoppingCart(String cartId) {
+        return shoppingCartStore.get(cartId);
+    }
+
+    /**
+     * Returns the cart for the given id, creating it if needed, for a request that is going
+     * to change it. The cart stays on heap until passed to {@link #releaseShoppingCart}.
+     */
+    public ShoppingCart acquireShoppingCart(String cartId) {
+        return shoppingCartStore.acquire(cartId);
+    }
+
+    public void releaseShoppingCart(String cartId, ShoppingCart cart) {
+        shoppingCartStore.release(cartId, cart);
     }
 
-    public ShoppingCart checkOutShoppingCart(String cartId) {
-        ShoppingCart cart = this.getShoppingCart(cartId);
-      
-        log.info("Sending  order: ");
-        shoppingCartOrderProcessor.process(cart);
-   
-        cart.resetShoppingCartItemList();
-        priceShoppingCart(cart);
-        return cart;
+    /**
+     * Hands the cart to the checkout pipeline and empties it once the order is accepted.
+     * Publishing happens in the background, so this does not wait on the message broker.
+     *
+     * @return the key of the accepted order, for polling its status
+     */
+    public String checkOutShoppingCart(String cartId) throws CheckoutException {
+        ShoppingCart cart = acquireShoppingCart(cartId);
+        long start = System.nanoTime();
+        String orderKey;
+        try {
+            synchronized (cart) {
+                orderKey = checkoutPipeline.submit(cart);
+                cart.resetShoppingCartItemList();
+                priceShoppingCart(cart);
+            }
+        } finally {
+            releaseShoppingCart(cartId, cart);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (elapsedMillis > checkoutBudgetMillis) {
+            log.warning("Checkout of order " + orderKey + " took " + elapsedMillis + " ms, budget is "
+                    + checkoutBudgetMillis + " ms");
+        }
+        return orderKey;
     }
 
     public void priceShoppingCart(ShoppingCart sc) {
 
         if (sc != null) {
 
-            initShoppingCartForPricing(sc);
+            priceShoppingCart(sc, productServices.getProductsByItemIds(itemIdsOf(sc)));
+
+        }
+
+    }
 
-            if (sc.getShoppingCartItemList() != null && sc.getShoppingCartItemList().size() > 0) {
+    /**
+     * Applies a batch of operations to the cart in order and prices it once at the end.
+     * The products of the whole batch and of the lines already in the cart are looked up
+     * together.
+     *
+     * @return one result per operation, in the same order
+     */
+    public List<CartOperationResult> applyOperations(ShoppingCart sc, List<CartOperation> operations) {
+
+        synchronized (sc) {
+
+            Set<String> itemIds = itemIdsOf(sc);
+            for (CartOperation operation : operations) {
+                if (operation.getItemId() != null) {
+                    itemIds.add(operation.getItemId());
+                }
+            }
+            Map<String, Product> products = productServices.getProductsByItemIds(itemIds);
 
-                ps.applyCartItemPromotions(sc);
+            List<CartOperationResult> results = new ArrayList<>(operations.size());
+            for (CartOperation operation : operations) {
+                results.add(applyOperation(sc, operation, products));
+            }
 
-                for (ShoppingCartItem sci : sc.getShoppingCartItemList()) {
+            priceShoppingCart(sc, products);
 
-                    sc.setCartItemPromoSavings(
-                            sc.getCartItemPromoSavings() + sci.getPromoSavings() * sci.getQuantity());
-                    sc.setCartItemTotal(sc.getCartItemTotal() + sci.getPrice() * sci.getQuantity());
+            return results;
 
-                }
+        }
 
-                sc.setShippingTotal(lookupShippingServiceRemote().calculateShipping(sc));
+    }
 
-                if (sc.getCartItemTotal() >= 25) {
-                    sc.setShippingTotal(sc.getShippingTotal()
-                            + lookupShippingServiceRemote().calculateShippingInsurance(sc));
-                }
+    private CartOperationResult applyOperation(ShoppingCart sc, CartOperation operation, Map<String, Product> products) {
 
+        String itemId = operation.getItemId();
+        if (itemId == null) {
+            return new CartOperationResult(operation, CartOperationResult.INVALID, 0);
+        }
+
+        ShoppingCartItem sci = sc.getShoppingCartItem(itemId);
+        int current = sci == null ? 0 : sci.getQuantity();
+
+        int quantity;
+        if (operation.getQuantity() < 0) {
+            return new CartOperationResult(operation, CartOperationResult.INVALID, current);
+        } else if (CartOperation.ADD.equals(operation.getOp())) {
+            quantity = current + operation.getQuantity();
+        } else if (CartOperation.REMOVE.equals(operation.getOp())) {
+            if (sci == null) {
+                return new CartOperationResult(operation, CartOperationResult.NOT_IN_CART, 0);
+            }
+            quantity = Math.max(0, current - operation.getQuantity());
+        } else if (CartOperation.SET.equals(operation.getOp())) {
+            quantity = operation.getQuantity();
+        } else {
+            return new CartOperationResult(operation, CartOperationResult.INVALID, current);
+        }
+
+        if (sci == null && quantity > 0) {
+            Product product = products.get(itemId);
+            if (product == null) {
+                return new CartOperationResult(operation, CartOperationResult.UNKNOWN_PRODUCT, 0);
+            }
+            sci = new ShoppingCartItem();
+            sci.setProduct(product);
+            sc.addShoppingCartItem(sci);
+        }
+
+        if (sci != null) {
+            if (quantity == 0) {
+                sc.removeShoppingCartItem(sci);
+            } else {
+                sci.setQuantity(quantity);
             }
+        }
+
+        return new CartOperationResult(operation, CartOperationResult.APPLIED, quantity);
+
+    }
 
-            ps.applyShippingPromotions(sc);
+    private void priceShoppingCart(ShoppingCart sc, Map<String, Product> products) {
 
-            sc.setCartTotal(sc.getCartItemTotal() + sc.getShippingTotal());
+        initShoppingCartForPricing(sc, products);
+
+        if (sc.getShoppingCartItemList() != null && sc.getShoppingCartItemList().size() > 0) {
+
+            ps.applyCartItemPromotions(sc);
+
+            long itemTotal = 0;
+            long promoSavings = 0;
+
+            for (ShoppingCartItem sci : sc.getShoppingCartItemList()) {
+
+                promoSavings += Money.times(sci.getPromoSavingsCents(), sci.getQuantity());
+                itemTotal += Money.times(sci.getPriceCents(), sci.getQuantity());
+
+            }
+
+            sc.setCartItemPromoSavingsCents(promoSavings);
+            sc.setCartItemTotalCents(itemTotal);
 
         }
 
+        priceShipping(sc);
+
     }
 
-    private void initShoppingCartForPricing(ShoppingCart sc) {
+    /**
+     * Adds a quantity of a product to the cart, merging with an existing line for the
+     * same product, and applies only that line's change to the cart totals.
+     */
+    public ShoppingCartItem addShoppingCartItem(ShoppingCart sc, Product product, int quantity) {
+
+        synchronized (sc) {
+
+            ShoppingCartItem sci = sc.getShoppingCartItem(product.getItemId());
+
+            if (sci == null) {
 
-        sc.setCartItemTotal(0);
-        sc.setCartItemPromoSavings(0);
-        sc.setShippingTotal(0);
-        sc.setShippingPromoSavings(0);
-        sc.setCartTotal(0);
+                sci = new ShoppingCartItem();
+                sci.setProduct(product);
+                sc.addShoppingCartItem(sci);
+
+            }
+
+            repriceLine(sc, sci, sci.getQuantity() + quantity);
+
+            return sci;
+
+        }
+
+    }
+
+    /**
+     * Removes up to the given quantity of a product from the cart, dropping the line once
+     * it is empty, and applies only that line's change to the cart totals.
+     */
+    public void removeShoppingCartItem(ShoppingCart sc, String itemId, int quantity) {
+
+        synchronized (sc) {
+
+            ShoppingCartItem sci = sc.getShoppingCartItem(itemId);
+
+            if (sci != null) {
+
+                repriceLine(sc, sci, Math.max(0, sci.getQuantity() - quantity));
+
+            }
+
+        }
+
+    }
+
+    private void repriceLine(ShoppingCart sc, ShoppingCartItem sci, int quantity) {
+
+        long previousTotal = Money.times(sci.getPriceCents(), sci.getQuantity());
+        long previousSavings = Money.times(sci.getPromoSavingsCents(), sci.getQuantity());
+
+        sci.setQuantity(quantity);
+        sci.setPrice(sci.getProduct().getPrice());
+        sci.setPromoSavingsCents(0);
+        ps.applyCartItemPromotion(sci);
+
+        // totals are whole cents, so applying the difference stays exact however many
+        // changes a cart goes through
+        sc.setCartItemTotalCents(sc.getCartItemTotalCents() - previousTotal + Money.times(sci.getPriceCents(), quantity));
+        sc.setCartItemPromoSavingsCents(sc.getCartItemPromoSavingsCents() - previousSavings
+                + Money.times(sci.getPromoSavingsCents(), quantity));
+
+        if (quantity == 0) {
+            sc.removeShoppingCartItem(sci);
+        }
+
+        priceShipping(sc);
+
+    }
+
+    // Insurance is a percentage of the item total, so shipping has to follow every
+    // change of the total; with the cached proxy and rate table this is two lookups.
+    private void priceShipping(ShoppingCart sc) {
+
+        sc.setShippingTotalCents(0);
+        sc.setShippingPromoSavingsCents(0);
+
+        if (sc.getShoppingCartItemList() != null && sc.getShoppingCartItemList().size() > 0) {
+
+            // the remote shipping contract is in dollars; whole cents survive the round trip
+            long shipping = Money.ofDollars(shippingService.calculateShipping(sc));
+
+            if (sc.getCartItemTotalCents() >= 25_00) {
+                shipping += Money.ofDollars(shippingService.calculateShippingInsurance(sc));
+            }
+
+            sc.setShippingTotalCents(shipping);
+
+        }
+
+        ps.applyShippingPromotions(sc);
+
+        sc.setCartTotalCents(sc.getCartItemTotalCents() + sc.getShippingTotalCents());
+
+    }
+
+    private void initShoppingCartForPricing(ShoppingCart sc, Map<String, Product> products) {
+
+        sc.setCartItemTotalCents(0);
+        sc.setCartItemPromoSavingsCents(0);
+        sc.setShippingTotalCents(0);
+        sc.setShippingPromoSavingsCents(0);
+        sc.setCartTotalCents(0);
 
         for (ShoppingCartItem sci : sc.getShoppingCartItemList()) {
-            Product p = getProduct(sci.getProduct().getItemId());
+            Product p = products.get(sci.getProduct().getItemId());
             //if product exist
             if (p != null) {
                 sci.setProduct(p);
                 sci.setPrice(p.getPrice());
             }
 
-            sci.setPromoSavings(0);
+            sci.setPromoSavingsCents(0);
         }
 
     }
@@ -111,16 +334,11 @@ public class ShoppingCartService  {
         return productServices.getProductByItemId(itemId);
     }
 
-	private static ShippingServiceRemote lookupShippingServiceRemote() {
-        try {
-            final Hashtable<String, String> jndiProperties = new Hashtable<>();
-            jndiProperties.put(Context.INITIAL_CONTEXT_FACTORY, "org.wildfly.naming.client.WildFlyInitialContextFactory");
-
-            final Context context = new InitialContext(jndiProperties);
-
-            return (ShippingServiceRemote) context.lookup("ejb:/ROOT/ShippingService!" + ShippingServiceRemote.class.getName());
-        } catch (NamingException e) {
-            throw new RuntimeException(e);
+    private static Set<String> itemIdsOf(ShoppingCart sc) {
+        Set<String> itemIds = new HashSet<>();
+        for (ShoppingCartItem sci : sc.getShoppingCartItemList()) {
+            itemIds.add(sci.getProduct().getItemId());
         }
+        return itemIds;
     }
 }
@@ -0,0 +1,318 @@
+package com.redhat.coolstore.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+
+import com.redhat.coolstore.model.ShoppingCart;
+
+/**
+ * Holds one {@link ShoppingCart} per cartId.
+ *
+ * Active carts live on heap in a fixed number of lock-striped, access-ordered
+ * segments, each bounded to its share of {@code coolstore.cart.maxEntries}.
+ * Carts that fall off the LRU end are either dropped or, when
+ * {@code coolstore.cart.offHeap.maxBytes} is greater than zero, serialized into
+ * a direct buffer and restored on the next access. Both tiers expire entries
+ * that have been idle for longer than {@code coolstore.cart.ttlMinutes}.
+ *
+ * A cart that is being changed must be taken with {@link #acquire} and handed
+ * back with {@link #release}. Acquired carts are never parked, since changes
+ * made to the live instance after it was serialized would be lost; a segment
+ * may run over its bound until they are released.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ShoppingCartStore {
+
+    private static final int STRIPES = 16;
+
+    @Inject
+    Logger log;
+
+    private final long ttlMillis = Long.getLong("coolstore.cart.ttlMinutes", 60L) * 60_000L;
+
+    private final int maxEntriesPerStripe = Math.max(1, Integer.getInteger("coolstore.cart.maxEntries", 10_000) / STRIPES);
+
+    private final long offHeapMaxBytes = Long.getLong("coolstore.cart.offHeap.maxBytes", 0L);
+
+    private final Segment[] segments = new Segment[STRIPES];
+
+    private final Map<String, IdleCart> idleCarts = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong offHeapBytes = new AtomicLong();
+
+    public ShoppingCartStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Returns the cart for the given id, creating an empty one if none is held.
+     */
+    public ShoppingCart getOrCreate(String cartId) {
+        return lookup(cartId, true, false);
+    }
+
+    /**
+     * Returns the cart for the given id, or null if none is held. Does not create one.
+     */
+    public ShoppingCart get(String cartId) {
+        return lookup(cartId, false, false);
+    }
+
+    /**
+     * Returns the cart for the given id, creating an empty one if none is held, and keeps
+     * it on heap until a matching call to {@link #release}.
+     */
+    public ShoppingCart acquire(String cartId) {
+        return lookup(cartId, true, true);
+    }
+
+    /**
+     * Hands back a cart taken with {@link #acquire}, after which it may be parked again.
+     */
+    public void release(String cartId, ShoppingCart cart) {
+        Segment segment = segmentFor(cartId);
+        synchronized (segment) {
+            Entry entry = segment.entries.get(cartId);
+            if (entry != null && entry.cart == cart && entry.users > 0) {
+                entry.users--;
+                evictOverflow(segment, null);
+            }
+        }
+    }
+
+    private ShoppingCart lookup(String cartId, boolean create, boolean use) {
+        Segment segment = segmentFor(cartId);
+        long now = System.currentTimeMillis();
+        synchronized (segment) {
+            Entry entry = segment.entries.get(cartId);
+            if (entry != null && (now - entry.lastAccess <= ttlMillis || entry.users > 0)) {
+                entry.lastAccess = now;
+                if (use) {
+                    entry.users++;
+                }
+                hits.incrementAndGet();
+                return entry.cart;
+            }
+            if (entry != null) {
+                segment.entries.remove(cartId);
+                evictions.incrementAndGet();
+            }
+
+            ShoppingCart cart = restoreIdle(cartId, now);
+            if (cart != null) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                if (!create) {
+                    return null;
+                }
+                cart = new ShoppingCart();
+            }
+            entry = new Entry(cart, now);
+            if (use) {
+                entry.users++;
+            }
+            segment.entries.put(cartId, entry);
+            evictOverflow(segment, entry);
+            return cart;
+        }
+    }
+
+    public void remove(String cartId) {
+        Segment segment = segmentFor(cartId);
+        synchronized (segment) {
+            segment.entries.remove(cartId);
+        }
+        IdleCart idle = idleCarts.remove(cartId);
+        if (idle != null) {
+            offHeapBytes.addAndGet(-idle.size());
+        }
+    }
+
+    @Schedule(hour = "*", minute = "*/5", persistent = false)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<Entry> it = segment.entries.values().iterator();
+                while (it.hasNext()) {
+                    Entry entry = it.next();
+                    if (entry.users == 0 && now - entry.lastAccess > ttlMillis) {
+                        it.remove();
+                        evictions.incrementAndGet();
+                    }
+                }
+            }
+        }
+        Iterator<Map.Entry<String, IdleCart>> it = idleCarts.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, IdleCart> e = it.next();
+            if (now - e.getValue().lastAccess > ttlMillis && idleCarts.remove(e.getKey(), e.getValue())) {
+                offHeapBytes.addAndGet(-e.getValue().size());
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int getResidentCarts() {
+        int count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.entries.size();
+            }
+        }
+        return count;
+    }
+
+    public int getIdleCarts() {
+        return idleCarts.size();
+    }
+
+    public long getResidentBytes() {
+        return offHeapBytes.get();
+    }
+
+    private Segment segmentFor(String cartId) {
+        int h = cartId.hashCode();
+        return segments[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    // drops or parks the least recently used carts, other than the one just handed out and
+    // those acquired, while over the bound
+    private void evictOverflow(Segment segment, Entry current) {
+        Iterator<Map.Entry<String, Entry>> it = segment.entries.entrySet().iterator();
+        while (segment.entries.size() > maxEntriesPerStripe && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getValue() == current || eldest.getValue().users > 0) {
+                continue;
+            }
+            it.remove();
+            if (!park(eldest.getKey(), eldest.getValue())) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean park(String cartId, Entry entry) {
+        if (offHeapMaxBytes <= 0) {
+            return false;
+        }
+        byte[] bytes;
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(512);
+            // a reader can still hold the cart, and carts are only changed under their own lock
+            synchronized (entry.cart) {
+                try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+                    out.writeObject(entry.cart);
+                }
+            }
+            bytes = bos.toByteArray();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to serialize idle cart " + cartId, e);
+            return false;
+        }
+        if (offHeapBytes.addAndGet(bytes.length) > offHeapMaxBytes) {
+            offHeapBytes.addAndGet(-bytes.length);
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        IdleCart previous = idleCarts.put(cartId, new IdleCart(buffer, entry.lastAccess));
+        if (previous != null) {
+            offHeapBytes.addAndGet(-previous.size());
+        }
+        return true;
+    }
+
+    private ShoppingCart restoreIdle(String cartId, long now) {
+        IdleCart idle = idleCarts.remove(cartId);
+        if (idle == null) {
+            return null;
+        }
+        offHeapBytes.addAndGet(-idle.size());
+        if (now - idle.lastAccess > ttlMillis) {
+            evictions.incrementAndGet();
+            return null;
+        }
+        byte[] bytes = new byte[idle.size()];
+        idle.buffer.duplicate().get(bytes);
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (ShoppingCart) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            log.log(Level.WARNING, "Unable to restore idle cart " + cartId, e);
+            return null;
+        }
+    }
+
+    private static final class Segment {
+        final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    }
+
+    private static final class Entry {
+        final ShoppingCart cart;
+        long lastAccess;
+        // requests between acquire and release, guarded by the segment lock
+        int users;
+
+        Entry(ShoppingCart cart, long lastAccess) {
+            this.cart = cart;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static final class IdleCart {
+        final ByteBuffer buffer;
+        final long lastAccess;
+
+        IdleCart(ByteBuffer buffer, long lastAccess) {
+            this.buffer = buffer;
+            this.lastAccess = lastAccess;
+        }
+
+        int size() {
+            return buffer.capacity();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.redhat.coolstore.utils;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Turns a keyset page query into a lazily fetched {@link Stream}. Only one page is held at a
+ * time; the next one is requested with the key of the last element once the current page
+ * has been consumed, and the stream ends at the first page shorter than {@code pageSize}.
+ */
+public final class KeysetStream {
+
+    public static <T, K> Stream<T> of(K start, int pageSize, Function<K, List<T>> pageQuery, Function<T, K> keyOf) {
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+
+            private K after = start;
+            private Iterator<T> page;
+            private boolean last;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                while (page == null || !page.hasNext()) {
+                    if (last) {
+                        return false;
+                    }
+                    List<T> items = pageQuery.apply(after);
+                    last = items.size() < pageSize;
+                    if (items.isEmpty()) {
+                        return false;
+                    }
+                    after = keyOf.apply(items.get(items.size() - 1));
+                    page = items.iterator();
+                }
+                action.accept(page.next());
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    private KeysetStream() {
+    }
+}
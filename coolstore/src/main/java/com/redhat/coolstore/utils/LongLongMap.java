@@ -0,0 +1,109 @@
+package com.redhat.coolstore.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from {@code long} to {@code long} without boxing.
+ *
+ * Not thread safe. {@link Long#MIN_VALUE} is reserved and cannot be used as a key.
+ */
+public class LongLongMap {
+
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    public LongLongMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    public long get(long key, long defaultValue) {
+        int slot = find(key);
+        return keys[slot] == key ? values[slot] : defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        return keys[find(key)] == key;
+    }
+
+    public void put(long key, long value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Reserved key " + key);
+        }
+        int slot = find(key);
+        if (keys[slot] != key) {
+            keys[slot] = key;
+            if (++size * 2 > keys.length) {
+                values[slot] = value;
+                grow();
+                return;
+            }
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Adds {@code delta} to the value of {@code key}, treating a missing key as 0.
+     *
+     * @return the new value
+     */
+    public long addTo(long key, long delta) {
+        long value = get(key, 0) + delta;
+        put(key, value);
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long[] keys() {
+        long[] result = new long[size];
+        int n = 0;
+        for (long key : keys) {
+            if (key != FREE) {
+                result[n++] = key;
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (mix(key) & mask);
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        Arrays.fill(keys, FREE);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
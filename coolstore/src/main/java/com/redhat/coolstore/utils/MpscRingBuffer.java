@@ -0,0 +1,82 @@
+package com.redhat.coolstore.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free queue for many producers and a single consumer.
+ *
+ * Each slot carries a sequence number: producers claim a position with one CAS on the tail
+ * and publish the element by advancing the slot's sequence, the consumer takes it once the
+ * sequence says it is ready and hands the slot back for the next lap. {@link #offer} never
+ * blocks and returns {@code false} when the buffer is full. {@link #poll} must only ever be
+ * called from one thread.
+ */
+public class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    public MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        elements = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long diff = sequences.get(slot) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[slot] = element;
+                    sequences.lazySet(slot, position + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head;
+        int slot = (int) position & mask;
+        if (sequences.get(slot) != position + 1) {
+            return null;
+        }
+        E element = (E) elements[slot];
+        elements[slot] = null;
+        sequences.lazySet(slot, position + elements.length);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Number of claimed positions not yet consumed. Includes elements whose producer has
+     * claimed a slot but not finished publishing, so it may briefly run ahead of {@link #poll}.
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+}
@@ -0,0 +1,104 @@
+package com.redhat.coolstore.utils;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.JMSProducer;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import javax.jms.Topic;
+
+import com.redhat.coolstore.model.Order;
+import com.redhat.coolstore.model.ShoppingCart;
+
+/**
+ * Sends and reads order messages on the orders topic.
+ *
+ * Orders are sent as JSON text unless {@code coolstore.orders.format} is {@code binary},
+ * in which case the compact layout of {@link Transformers#shoppingCartToBytes} is sent as a
+ * {@link BytesMessage} tagged with the {@value #FORMAT_PROPERTY} property. Consumers accept
+ * both, so producers and consumers can be switched over independently.
+ */
+public class OrderMessages {
+
+    public static final String FORMAT_PROPERTY = "orderFormat";
+
+    private static final String BINARY_FORMAT_PREFIX = "binary-v";
+
+    public static final String BINARY_FORMAT = BINARY_FORMAT_PREFIX + Transformers.ORDER_FORMAT_VERSION;
+
+    public static final String JSON_FORMAT = "json";
+
+    /** Message property carrying a key that stays the same across redeliveries of an order. */
+    public static final String ORDER_KEY_PROPERTY = "orderKey";
+
+    /** Set on orders whose stock was already taken out at checkout. */
+    public static final String INVENTORY_RESERVED_PROPERTY = "inventoryReserved";
+
+    private static final boolean SEND_BINARY = "binary".equalsIgnoreCase(System.getProperty("coolstore.orders.format"));
+
+    /**
+     * The format new orders are encoded in, {@link #BINARY_FORMAT} or {@link #JSON_FORMAT}.
+     */
+    public static String outgoingFormat() {
+        return SEND_BINARY ? BINARY_FORMAT : JSON_FORMAT;
+    }
+
+    public static byte[] encode(ShoppingCart cart, String format) {
+        if (BINARY_FORMAT.equals(format)) {
+            return Transformers.shoppingCartToBytes(cart);
+        }
+        return Transformers.shoppingCartToJson(cart).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads an order encoded with {@link #encode}, or by a producer of a later binary version.
+     */
+    public static Order decode(String format, byte[] payload) {
+        if (isBinary(format)) {
+            return Transformers.bytesToOrder(payload);
+        }
+        return Transformers.jsonToOrder(new String(payload, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends an order that was encoded earlier with {@link #encode}.
+     */
+    public static void send(JMSContext context, JMSProducer producer, Topic topic, String format, byte[] payload) {
+        if (BINARY_FORMAT.equals(format)) {
+            BytesMessage message = context.createBytesMessage();
+            try {
+                message.writeBytes(payload);
+                message.setStringProperty(FORMAT_PROPERTY, BINARY_FORMAT);
+            } catch (JMSException e) {
+                throw new IllegalStateException(e);
+            }
+            producer.send(topic, message);
+        } else {
+            producer.send(topic, new String(payload, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Returns the order carried by the message, or {@code null} if it is not an order message.
+     */
+    public static Order toOrder(Message message) throws JMSException {
+        if (message instanceof TextMessage) {
+            return Transformers.jsonToOrder(((TextMessage) message).getText());
+        }
+        if (message instanceof BytesMessage && isBinary(message.getStringProperty(FORMAT_PROPERTY))) {
+            return Transformers.bytesToOrder(message.getBody(byte[].class));
+        }
+        return null;
+    }
+
+    // the version byte in the payload decides how it is read, so any binary version is accepted
+    private static boolean isBinary(String format) {
+        return format != null && format.startsWith(BINARY_FORMAT_PREFIX);
+    }
+
+    private OrderMessages() {
+    }
+}
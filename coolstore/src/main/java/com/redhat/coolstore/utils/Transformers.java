@@ -1,20 +1,30 @@
 package com.redhat.coolstore.utils;
 
+import com.redhat.coolstore.model.CartBatchResult;
+import com.redhat.coolstore.model.CartOperationResult;
 import com.redhat.coolstore.model.CatalogItemEntity;
+import com.redhat.coolstore.model.Money;
 import com.redhat.coolstore.model.Order;
 import com.redhat.coolstore.model.OrderItem;
 import com.redhat.coolstore.model.Product;
 import com.redhat.coolstore.model.ShoppingCart;
+import com.redhat.coolstore.model.ShoppingCartItem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonArrayBuilder;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
-import javax.json.JsonWriter;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
 
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Logger;
@@ -29,6 +39,19 @@ public class Transformers {
 
     private static Logger log = Logger.getLogger(Transformers.class.getName());
 
+    // Order JSON is written and read as a token stream; no object tree is built on either side.
+    private static final JsonGeneratorFactory GENERATOR_FACTORY = Json.createGeneratorFactory(null);
+    private static final JsonParserFactory PARSER_FACTORY = Json.createParserFactory(null);
+
+    public static final int ORDER_FORMAT_VERSION = 1;
+
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final ThreadLocal<StringWriter> JSON_BUFFER = ThreadLocal.withInitial(() -> new StringWriter(512));
+
+    public static JsonGenerator createGenerator(OutputStream out) {
+        return GENERATOR_FACTORY.createGenerator(out, StandardCharsets.UTF_8);
+    }
+
     public static Product toProduct(CatalogItemEntity entity) {
         Product prod = new Product();
         prod.setItemId(entity.getItemId());
@@ -46,55 +69,310 @@ public class Transformers {
     }
 
     public static String shoppingCartToJson(ShoppingCart cart) {
-        JsonArrayBuilder cartItems = Json.createArrayBuilder();
-        cart.getShoppingCartItemList().forEach(item -> {
-            cartItems.add(Json.createObjectBuilder()
-                .add("productSku",item.getProduct().getItemId())
-                .add("quantity",item.getQuantity())
-            );
-        });
-
         int randomNameAndEmailIndex = ThreadLocalRandom.current().nextInt(RANDOM_NAMES.length);
 
-        JsonObject jsonObject = Json.createObjectBuilder()
-            .add("orderValue", Double.valueOf(cart.getCartTotal()))
-            .add("customerName",RANDOM_NAMES[randomNameAndEmailIndex])
-            .add("customerEmail",RANDOM_EMAILS[randomNameAndEmailIndex])
-            .add("retailPrice", cart.getShoppingCartItemList().stream().mapToDouble(i -> i.getQuantity()*i.getPrice()).sum())
-            .add("discount", Double.valueOf(cart.getCartItemPromoSavings()))
-            .add("shippingFee", Double.valueOf(cart.getShippingTotal()))
-            .add("shippingDiscount", Double.valueOf(cart.getShippingPromoSavings()))
-            .add("items",cartItems) 
-            .build();
-        StringWriter w = new StringWriter();
-        try (JsonWriter writer = Json.createWriter(w)) {
-            writer.write(jsonObject);
+        long retailPrice = retailPriceOf(cart);
+
+        StringWriter w = JSON_BUFFER.get();
+        w.getBuffer().setLength(0);
+        try (JsonGenerator generator = GENERATOR_FACTORY.createGenerator(w)) {
+            generator.writeStartObject();
+            Money.write(generator, "orderValue", cart.getCartTotalCents());
+            generator.write("customerName", RANDOM_NAMES[randomNameAndEmailIndex])
+                .write("customerEmail", RANDOM_EMAILS[randomNameAndEmailIndex]);
+            Money.write(generator, "retailPrice", retailPrice);
+            Money.write(generator, "discount", cart.getCartItemPromoSavingsCents());
+            Money.write(generator, "shippingFee", cart.getShippingTotalCents());
+            Money.write(generator, "shippingDiscount", cart.getShippingPromoSavingsCents());
+            generator.writeStartArray("items");
+            for (ShoppingCartItem item : cart.getShoppingCartItemList()) {
+                generator.writeStartObject()
+                    .write("productSku", item.getProduct().getItemId())
+                    .write("quantity", item.getQuantity())
+                    .writeEnd();
+            }
+            generator.writeEnd().writeEnd();
+        }
+        String json = w.toString();
+        if (w.getBuffer().capacity() > MAX_RETAINED_BUFFER) {
+            JSON_BUFFER.remove();
         }
-        return w.toString();
+        return json;
     }
 
     public static Order jsonToOrder(String json) {
-        JsonReader jsonReader = Json.createReader(new StringReader(json));
-        JsonObject rootObject = jsonReader.readObject();
         Order order = new Order();
-        order.setCustomerName(rootObject.getString("customerName"));
-        order.setCustomerEmail(rootObject.getString("customerEmail"));
-        order.setOrderValue(rootObject.getJsonNumber("orderValue").doubleValue());
-        order.setRetailPrice(rootObject.getJsonNumber("retailPrice").doubleValue());
-        order.setDiscount(rootObject.getJsonNumber("discount").doubleValue());
-        order.setShippingFee(rootObject.getJsonNumber("shippingFee").doubleValue());
-        order.setShippingDiscount(rootObject.getJsonNumber("shippingDiscount").doubleValue());
-        JsonArray jsonItems = rootObject.getJsonArray("items");
-        List<OrderItem> items = new ArrayList<OrderItem>(jsonItems.size());
-        for (JsonObject jsonItem : jsonItems.getValuesAs(JsonObject.class)) {
-            OrderItem oi = new OrderItem();
-            oi.setProductId(jsonItem.getString("productSku"));
-            oi.setQuantity(jsonItem.getInt("quantity"));
-            items.add(oi);
+        List<OrderItem> items = new ArrayList<OrderItem>();
+        OrderItem item = null;
+        String key = null;
+        int depth = 0;
+        boolean inItems = false;
+        try (JsonParser parser = PARSER_FACTORY.createParser(new StringReader(json))) {
+            while (parser.hasNext()) {
+                JsonParser.Event event = parser.next();
+                switch (event) {
+                    case START_OBJECT:
+                        depth++;
+                        if (depth == 2 && inItems) {
+                            item = new OrderItem();
+                        }
+                        break;
+                    case END_OBJECT:
+                        if (item != null && depth == 2) {
+                            items.add(item);
+                            item = null;
+                        }
+                        depth--;
+                        break;
+                    case START_ARRAY:
+                        inItems = depth == 1 && "items".equals(key);
+                        break;
+                    case END_ARRAY:
+                        inItems = false;
+                        break;
+                    case KEY_NAME:
+                        key = parser.getString();
+                        break;
+                    case VALUE_STRING:
+                        if (item != null) {
+                            if ("productSku".equals(key)) {
+                                item.setProductId(parser.getString());
+                            }
+                        } else if ("customerName".equals(key)) {
+                            order.setCustomerName(parser.getString());
+                        } else if ("customerEmail".equals(key)) {
+                            order.setCustomerEmail(parser.getString());
+                        }
+                        break;
+                    case VALUE_NUMBER:
+                        if (item != null) {
+                            if ("quantity".equals(key)) {
+                                item.setQuantity(parser.getInt());
+                            }
+                        } else {
+                            setOrderAmount(order, key, parser.getBigDecimal().doubleValue());
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
         }
-        order.setItemList(items); 
+        order.setItemList(items);
         return order;
     }
 
+    /**
+     * Binary form of {@link #shoppingCartToJson(ShoppingCart)}. Layout, big-endian:
+     * <pre>
+     * version:u8  headerLength:u16  header  itemCount:i32  (productSku:utf  quantity:i32)*
+     * header = orderValue:f64 retailPrice:f64 discount:f64 shippingFee:f64 shippingDiscount:f64
+     *          customerName:utf customerEmail:utf
+     * </pre>
+     * where {@code utf} is a u16 length followed by modified UTF-8. Readers skip any header
+     * bytes beyond the fields they know, so later versions may append header fields; any
+     * version from 1 up is read this way.
+     */
+    public static byte[] shoppingCartToBytes(ShoppingCart cart) {
+        int randomNameAndEmailIndex = ThreadLocalRandom.current().nextInt(RANDOM_NAMES.length);
+        try {
+            ByteArrayOutputStream header = new ByteArrayOutputStream(128);
+            DataOutputStream h = new DataOutputStream(header);
+            h.writeDouble(cart.getCartTotal());
+            h.writeDouble(Money.toDollars(retailPriceOf(cart)));
+            h.writeDouble(cart.getCartItemPromoSavings());
+            h.writeDouble(cart.getShippingTotal());
+            h.writeDouble(cart.getShippingPromoSavings());
+            h.writeUTF(RANDOM_NAMES[randomNameAndEmailIndex]);
+            h.writeUTF(RANDOM_EMAILS[randomNameAndEmailIndex]);
+
+            List<ShoppingCartItem> items = cart.getShoppingCartItemList();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(header.size() + 8 + items.size() * 16);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(ORDER_FORMAT_VERSION);
+            out.writeShort(header.size());
+            header.writeTo(out);
+            out.writeInt(items.size());
+            for (ShoppingCartItem item : items) {
+                out.writeUTF(item.getProduct().getItemId());
+                out.writeInt(item.getQuantity());
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static Order bytesToOrder(byte[] bytes) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            int version = in.readUnsignedByte();
+            if (version < 1) {
+                throw new IllegalArgumentException("Unsupported order format version " + version);
+            }
+            int headerLength = in.readUnsignedShort();
+            DataInputStream h = new DataInputStream(new ByteArrayInputStream(bytes, 3, headerLength));
+            Order order = new Order();
+            order.setOrderValue(h.readDouble());
+            order.setRetailPrice(h.readDouble());
+            order.setDiscount(h.readDouble());
+            order.setShippingFee(h.readDouble());
+            order.setShippingDiscount(h.readDouble());
+            order.setCustomerName(h.readUTF());
+            order.setCustomerEmail(h.readUTF());
+
+            in.skipBytes(headerLength);
+            int count = in.readInt();
+            List<OrderItem> items = new ArrayList<OrderItem>(count);
+            for (int i = 0; i < count; i++) {
+                OrderItem oi = new OrderItem();
+                oi.setProductId(in.readUTF());
+                oi.setQuantity(in.readInt());
+                items.add(oi);
+            }
+            order.setItemList(items);
+            return order;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed binary order", e);
+        }
+    }
+
+    /**
+     * Writes a product as a JSON object with the same fields the REST layer produces for it.
+     */
+    public static void writeProduct(JsonGenerator generator, Product product) {
+        generator.writeStartObject();
+        writeProductFields(generator, product);
+        generator.writeEnd();
+    }
+
+    private static void writeProductFields(JsonGenerator generator, Product product) {
+        writeString(generator, "itemId", product.getItemId());
+        writeString(generator, "name", product.getName());
+        writeString(generator, "desc", product.getDesc());
+        generator.write("price", product.getPrice());
+        writeString(generator, "location", product.getLocation());
+        generator.write("quantity", product.getQuantity());
+        writeString(generator, "link", product.getLink());
+    }
+
+    /**
+     * Writes a cart, its lines and their products as a JSON object with the same fields the
+     * REST layer has always produced for it; amounts are written in dollars.
+     */
+    public static void writeShoppingCart(JsonGenerator generator, ShoppingCart cart) {
+        generator.writeStartObject();
+        writeShoppingCartFields(generator, cart);
+        generator.writeEnd();
+    }
+
+    private static void writeShoppingCartFields(JsonGenerator generator, ShoppingCart cart) {
+        Money.write(generator, "cartItemTotal", cart.getCartItemTotalCents());
+        Money.write(generator, "cartItemPromoSavings", cart.getCartItemPromoSavingsCents());
+        Money.write(generator, "shippingTotal", cart.getShippingTotalCents());
+        Money.write(generator, "shippingPromoSavings", cart.getShippingPromoSavingsCents());
+        Money.write(generator, "cartTotal", cart.getCartTotalCents());
+        generator.writeStartArray("shoppingCartItemList");
+        for (ShoppingCartItem item : cart.getShoppingCartItemList()) {
+            generator.writeStartObject();
+            Money.write(generator, "price", item.getPriceCents());
+            generator.write("quantity", item.getQuantity());
+            Money.write(generator, "promoSavings", item.getPromoSavingsCents());
+            if (item.getProduct() == null) {
+                generator.writeNull("product");
+            } else {
+                generator.writeStartObject("product");
+                writeProductFields(generator, item.getProduct());
+                generator.writeEnd();
+            }
+            generator.writeEnd();
+        }
+        generator.writeEnd();
+    }
+
+    /**
+     * Writes the outcome of a batch of cart operations as {@code {"cart": ..., "results": [...]}},
+     * the cart as {@link #writeShoppingCart} writes it.
+     */
+    public static void writeCartBatchResult(JsonGenerator generator, CartBatchResult result) {
+        generator.writeStartObject()
+            .writeStartObject("cart");
+        writeShoppingCartFields(generator, result.getCart());
+        generator.writeEnd()
+            .writeStartArray("results");
+        for (CartOperationResult operation : result.getResults()) {
+            generator.writeStartObject();
+            writeString(generator, "op", operation.getOp());
+            writeString(generator, "itemId", operation.getItemId());
+            writeString(generator, "status", operation.getStatus());
+            generator.write("quantity", operation.getQuantity())
+                .writeEnd();
+        }
+        generator.writeEnd().writeEnd();
+    }
+
+    /**
+     * Writes an order and its items as a JSON object with the same fields the REST layer
+     * produces for it.
+     */
+    public static void writeOrder(JsonGenerator generator, Order order) {
+        generator.writeStartObject()
+            .write("orderId", order.getOrderId());
+        writeString(generator, "orderKey", order.getOrderKey());
+        writeString(generator, "customerName", order.getCustomerName());
+        writeString(generator, "customerEmail", order.getCustomerEmail());
+        generator.write("orderValue", order.getOrderValue())
+            .write("retailPrice", order.getRetailPrice())
+            .write("discount", order.getDiscount())
+            .write("shippingFee", order.getShippingFee())
+            .write("shippingDiscount", order.getShippingDiscount())
+            .writeStartArray("itemList");
+        for (OrderItem item : order.getItemList()) {
+            generator.writeStartObject();
+            writeString(generator, "productId", item.getProductId());
+            generator.write("quantity", item.getQuantity())
+                .writeEnd();
+        }
+        generator.writeEnd().writeEnd();
+    }
+
+    private static void writeString(JsonGenerator generator, String name, String value) {
+        if (value == null) {
+            generator.writeNull(name);
+        } else {
+            generator.write(name, value);
+        }
+    }
+
+    private static long retailPriceOf(ShoppingCart cart) {
+        long retailPrice = 0;
+        for (ShoppingCartItem item : cart.getShoppingCartItemList()) {
+            retailPrice += Money.times(item.getPriceCents(), item.getQuantity());
+        }
+        return retailPrice;
+    }
+
+    private static void setOrderAmount(Order order, String key, double value) {
+        switch (key) {
+            case "orderValue":
+                order.setOrderValue(value);
+                break;
+            case "retailPrice":
+                order.setRetailPrice(value);
+                break;
+            case "discount":
+                order.setDiscount(value);
+                break;
+            case "shippingFee":
+                order.setShippingFee(value);
+                break;
+            case "shippingDiscount":
+                order.setShippingDiscount(value);
+                break;
+            default:
+                break;
+        }
+    }
+
 
 }
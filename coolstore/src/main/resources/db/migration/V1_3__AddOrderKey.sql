@@ -0,0 +1,3 @@
+alter table ORDERS add column orderKey varchar(64);
+
+create unique index ORDERS_ORDERKEY_IDX on ORDERS (orderKey);
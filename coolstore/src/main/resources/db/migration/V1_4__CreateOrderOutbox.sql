@@ -0,0 +1,16 @@
+create table ORDER_OUTBOX (
+    id int8 not null,
+    orderKey varchar(64) not null,
+    format varchar(16) not null,
+    payload bytea not null,
+    status varchar(16) not null,
+    attempts int4 not null,
+    createdAt timestamp not null,
+    publishedAt timestamp,
+    lastError varchar(255),
+    primary key (id)
+);
+
+create unique index ORDER_OUTBOX_ORDERKEY_IDX on ORDER_OUTBOX (orderKey);
+
+create index ORDER_OUTBOX_STATUS_IDX on ORDER_OUTBOX (status, id);
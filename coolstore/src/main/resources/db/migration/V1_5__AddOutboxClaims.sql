@@ -0,0 +1,7 @@
+alter table ORDER_OUTBOX add column claimedBy varchar(64);
+
+alter table ORDER_OUTBOX add column claimedUntil timestamp;
+
+drop index ORDER_OUTBOX_STATUS_IDX;
+
+create index ORDER_OUTBOX_PENDING_IDX on ORDER_OUTBOX (id) where status = 'PENDING';
@@ -0,0 +1,110 @@
+package com.redhat.coolstore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.enterprise.audit.logging.model.AuditResult;
+import com.redhat.coolstore.model.Order;
+import com.redhat.coolstore.model.OrderEvent;
+import com.redhat.coolstore.model.OrderItem;
+
+/**
+ * A batch with one order that cannot be stored must still store the others. The writer
+ * stands in for the entity manager: it gives every persisted order an id before it fails,
+ * as a rolled-back flush does, and rejects orders that already have one, as Hibernate does
+ * for detached entities.
+ */
+public class OrderIngestionBatcherTest {
+
+    private final List<Integer> attempts = Collections.synchronizedList(new ArrayList<>());
+
+    private final Set<String> stored = Collections.synchronizedSet(new HashSet<>());
+
+    private OrderIngestionBatcher batcher;
+
+    @BeforeEach
+    public void setUp() {
+        System.setProperty("coolstore.orders.batchSize", "3");
+        System.setProperty("coolstore.orders.batchWaitMillis", "5000");
+        batcher = new OrderIngestionBatcher();
+        batcher.log = Logger.getLogger(OrderIngestionBatcher.class.getName());
+        batcher.threadFactory = Thread::new;
+        batcher.auditWriter = new AuditWriter() {
+            @Override
+            public boolean log(String eventType, String action, String resource, AuditResult result, String message) {
+                return true;
+            }
+        };
+        batcher.batchWriter = new OrderBatchWriter() {
+            private long nextId = 1;
+
+            @Override
+            public Set<Order> write(List<Order> orders, Set<Order> inventoryReserved) {
+                attempts.add(orders.size());
+                for (Order order : orders) {
+                    if (order.getOrderId() != 0) {
+                        throw new IllegalStateException("detached entity passed to persist: " + order.getOrderKey());
+                    }
+                    order.setOrderId(nextId++);
+                }
+                for (Order order : orders) {
+                    if (order.getOrderKey().startsWith("bad")) {
+                        throw new IllegalStateException("constraint violation: " + order.getOrderKey());
+                    }
+                }
+                for (Order order : orders) {
+                    stored.add(order.getOrderKey());
+                }
+                return new HashSet<>(orders);
+            }
+        };
+        batcher.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        batcher.stop();
+        System.clearProperty("coolstore.orders.batchSize");
+        System.clearProperty("coolstore.orders.batchWaitMillis");
+    }
+
+    @Test
+    public void oneFailingOrderDoesNotFailItsBatch() throws Exception {
+        CompletableFuture<Boolean> first = batcher.submit(event("order-1"));
+        CompletableFuture<Boolean> bad = batcher.submit(event("bad-2"));
+        CompletableFuture<Boolean> third = batcher.submit(event("order-3"));
+
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+        assertTrue(third.get(10, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> bad.get(10, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(3, 1, 1, 1), attempts);
+        assertEquals(new HashSet<>(Arrays.asList("order-1", "order-3")), stored);
+    }
+
+    private static OrderEvent event(String orderKey) {
+        OrderItem item = new OrderItem();
+        item.setProductId("329299");
+        item.setQuantity(1);
+        Order order = new Order();
+        order.setOrderKey(orderKey);
+        order.setItemList(new ArrayList<>(Collections.singletonList(item)));
+        return OrderEvent.of(order);
+    }
+}
@@ -0,0 +1,214 @@
+package com.redhat.coolstore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import javax.enterprise.inject.Instance;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.redhat.coolstore.model.OrderEvent;
+import com.redhat.coolstore.model.OrderOutboxEntry;
+import com.redhat.coolstore.model.Product;
+import com.redhat.coolstore.model.ShoppingCart;
+import com.redhat.coolstore.model.ShoppingCartItem;
+import com.redhat.coolstore.utils.OrderMessages;
+
+/**
+ * Runs the relay against the in-memory broker. The store stands in for the outbox table:
+ * it hands out pending entries, and counts failures the way the database does.
+ */
+public class OrderOutboxRelayTest {
+
+    private final Map<Long, OrderOutboxEntry> outbox = new ConcurrentHashMap<>();
+
+    private final List<OrderEvent> delivered = Collections.synchronizedList(new ArrayList<>());
+
+    private long nextId = 1;
+
+    private InMemoryOrderBroker broker;
+
+    private OrderOutboxRelay relay;
+
+    @BeforeEach
+    public void setUp() {
+        System.setProperty("coolstore.outbox.broker", "memory");
+        System.setProperty("coolstore.outbox.pollMillis", "10");
+        System.setProperty("coolstore.outbox.maxAttempts", "3");
+
+        broker = new InMemoryOrderBroker();
+        broker.orderEventDispatcher = new OrderEventDispatcher() {
+            @Override
+            public CompletableFuture<Void> dispatch(OrderEvent event) {
+                delivered.add(event);
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+
+        relay = new OrderOutboxRelay();
+        relay.log = Logger.getLogger(OrderOutboxRelay.class.getName());
+        relay.threadFactory = Thread::new;
+        relay.publishers = instanceOf(broker);
+        relay.outboxStore = new OrderOutboxStore() {
+            @Override
+            public List<OrderOutboxEntry> claim(String relay, int limit, long leaseMillis) {
+                List<OrderOutboxEntry> claimed = new ArrayList<>();
+                for (long id = 1; id < nextId && claimed.size() < limit; id++) {
+                    OrderOutboxEntry entry = outbox.get(id);
+                    if (OrderOutboxEntry.PENDING.equals(entry.getStatus())) {
+                        claimed.add(entry);
+                    }
+                }
+                return claimed;
+            }
+
+            @Override
+            public int markPublished(List<Long> ids, Date publishedAt) {
+                for (Long id : ids) {
+                    outbox.get(id).setStatus(OrderOutboxEntry.PUBLISHED);
+                }
+                return ids.size();
+            }
+
+            @Override
+            public boolean recordFailure(long id, String error, int maxAttempts) {
+                OrderOutboxEntry entry = outbox.get(id);
+                entry.setAttempts(entry.getAttempts() + 1);
+                entry.setLastError(error);
+                if (entry.getAttempts() >= maxAttempts) {
+                    entry.setStatus(OrderOutboxEntry.FAILED);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @AfterEach
+    public void tearDown() {
+        relay.stop();
+        System.clearProperty("coolstore.outbox.broker");
+        System.clearProperty("coolstore.outbox.pollMillis");
+        System.clearProperty("coolstore.outbox.maxAttempts");
+    }
+
+    @Test
+    public void claimedEntriesArePublishedDeliveredAndMarked() throws Exception {
+        OrderOutboxEntry json = enqueue("order-1", OrderMessages.JSON_FORMAT);
+        OrderOutboxEntry binary = enqueue("order-2", OrderMessages.BINARY_FORMAT);
+
+        relay.start();
+
+        await(() -> relay.getPublished() == 2);
+        assertEquals(OrderOutboxEntry.PUBLISHED, json.getStatus());
+        assertEquals(OrderOutboxEntry.PUBLISHED, binary.getStatus());
+        assertEquals(2, broker.getPublished().size());
+        assertEquals(2, delivered.size());
+        for (OrderEvent event : delivered) {
+            assertTrue(event.isInventoryReserved());
+            assertEquals(44.48, event.getOrderValue(), 0.0);
+            assertEquals(2, event.getLines().size());
+        }
+        assertEquals("order-1", delivered.get(0).getOrderKey());
+        assertEquals("order-2", delivered.get(1).getOrderKey());
+    }
+
+    @Test
+    public void failedBatchIsRetriedOneByOne() throws Exception {
+        OrderOutboxEntry first = enqueue("order-1", OrderMessages.JSON_FORMAT);
+        OrderOutboxEntry second = enqueue("order-2", OrderMessages.JSON_FORMAT);
+        // the batch and the first single retry fail
+        broker.failNext(2);
+
+        relay.start();
+
+        await(() -> relay.getPublished() == 2);
+        assertEquals(OrderOutboxEntry.PUBLISHED, first.getStatus());
+        assertEquals(1, first.getAttempts());
+        assertEquals(OrderOutboxEntry.PUBLISHED, second.getStatus());
+        assertEquals(0, second.getAttempts());
+        assertEquals(1, relay.getFailedAttempts());
+        assertEquals(0, relay.getGivenUp());
+        assertEquals(2, delivered.size());
+    }
+
+    @Test
+    public void entryIsGivenUpOnAfterMaxAttempts() throws Exception {
+        OrderOutboxEntry entry = enqueue("order-1", OrderMessages.JSON_FORMAT);
+        broker.failNext(Integer.MAX_VALUE);
+
+        relay.start();
+
+        await(() -> relay.getGivenUp() == 1);
+        assertEquals(OrderOutboxEntry.FAILED, entry.getStatus());
+        assertEquals(3, entry.getAttempts());
+        assertEquals(3, relay.getFailedAttempts());
+        assertEquals(0, relay.getPublished());
+        assertTrue(broker.getPublished().isEmpty());
+        assertTrue(delivered.isEmpty());
+    }
+
+    private OrderOutboxEntry enqueue(String orderKey, String format) throws Exception {
+        OrderOutboxEntry entry = new OrderOutboxEntry(orderKey, format, OrderMessages.encode(cart(), format));
+        // the id is generated by the database
+        Field id = OrderOutboxEntry.class.getDeclaredField("id");
+        id.setAccessible(true);
+        id.setLong(entry, nextId);
+        outbox.put(nextId++, entry);
+        return entry;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Instance<OrderPublisher> instanceOf(OrderPublisher publisher) {
+        return (Instance<OrderPublisher>) Proxy.newProxyInstance(OrderOutboxRelayTest.class.getClassLoader(),
+                new Class<?>[] {Instance.class}, (proxy, method, args) -> {
+                    if ("iterator".equals(method.getName())) {
+                        return Collections.singletonList(publisher).iterator();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static ShoppingCart cart() {
+        ShoppingCart cart = new ShoppingCart();
+        cart.addShoppingCartItem(item("329299", 1099, 2));
+        cart.addShoppingCartItem(item("165613", 2500, 1));
+        cart.setCartItemTotalCents(4698);
+        cart.setCartItemPromoSavingsCents(-250);
+        cart.setCartTotalCents(4448);
+        return cart;
+    }
+
+    private static ShoppingCartItem item(String itemId, long priceCents, int quantity) {
+        Product product = new Product();
+        product.setItemId(itemId);
+        ShoppingCartItem item = new ShoppingCartItem();
+        item.setProduct(product);
+        item.setPriceCents(priceCents);
+        item.setQuantity(quantity);
+        return item;
+    }
+}
@@ -0,0 +1,88 @@
+package com.redhat.coolstore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.redhat.coolstore.model.CatalogItemEntity;
+import com.redhat.coolstore.model.InventoryEntity;
+import com.redhat.coolstore.model.Product;
+
+/**
+ * Products handed out by the cache are shared, so none of the ways to read them may return
+ * one that a caller can change.
+ */
+public class ProductCatalogCacheTest {
+
+    private ProductCatalogCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new ProductCatalogCache();
+        cache.log = Logger.getLogger(ProductCatalogCache.class.getName());
+        cache.catalogService = new CatalogService() {
+            @Override
+            public List<CatalogItemEntity> getCatalogItems() {
+                return Arrays.asList(item("329299", 34.99), item("165613", 17.80));
+            }
+
+            @Override
+            public CatalogItemEntity getCatalogItemById(String itemId) {
+                return item(itemId, 9.99);
+            }
+
+            @Override
+            public List<CatalogItemEntity> getCatalogItemsById(Collection<String> itemIds) {
+                List<CatalogItemEntity> items = new ArrayList<>();
+                for (String itemId : itemIds) {
+                    items.add(item(itemId, 9.99));
+                }
+                return items;
+            }
+        };
+    }
+
+    @Test
+    public void cachedProductsCannotBeChanged() {
+        Product listed = cache.getProducts().get(0);
+        Product single = cache.getProduct("444434");
+        Product batched = cache.getProducts(Arrays.asList("444435")).get("444435");
+
+        assertThrows(UnsupportedOperationException.class, () -> listed.setPrice(0.01));
+        assertThrows(UnsupportedOperationException.class, () -> single.setQuantity(0));
+        assertThrows(UnsupportedOperationException.class, () -> batched.setName("changed"));
+        assertEquals(34.99, cache.getProduct("329299").getPrice(), 0.0);
+    }
+
+    @Test
+    public void sharesOneInstancePerItem() {
+        Product first = cache.getProduct("444434");
+
+        assertSame(first, cache.getProduct("444434"));
+        assertSame(first, cache.getProducts(Arrays.asList("444434")).get("444434"));
+    }
+
+    private static CatalogItemEntity item(String itemId, double price) {
+        InventoryEntity inventory = new InventoryEntity();
+        inventory.setItemId(itemId);
+        inventory.setLocation("Raleigh");
+        inventory.setQuantity(10);
+        inventory.setLink("http://maps.google.com/?q=Raleigh");
+        CatalogItemEntity entity = new CatalogItemEntity();
+        entity.setItemId(itemId);
+        entity.setName("Product " + itemId);
+        entity.setDesc("Description of " + itemId);
+        entity.setPrice(price);
+        entity.setInventory(inventory);
+        return entity;
+    }
+}
@@ -0,0 +1,104 @@
+package com.redhat.coolstore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.redhat.coolstore.model.Product;
+import com.redhat.coolstore.model.ShoppingCart;
+import com.redhat.coolstore.model.ShoppingCartItem;
+
+/**
+ * A store of one cart per segment with off-heap parking on, so the second cart of a segment
+ * pushes the first one out unless it is acquired.
+ */
+public class ShoppingCartStoreTest {
+
+    private ShoppingCartStore store;
+
+    private String first;
+
+    private String second;
+
+    @BeforeEach
+    public void setUp() {
+        System.setProperty("coolstore.cart.maxEntries", "16");
+        System.setProperty("coolstore.cart.offHeap.maxBytes", "1048576");
+        store = new ShoppingCartStore();
+        first = "cart-0";
+        second = null;
+        for (int i = 1; second == null; i++) {
+            if (segmentOf("cart-" + i) == segmentOf(first)) {
+                second = "cart-" + i;
+            }
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty("coolstore.cart.maxEntries");
+        System.clearProperty("coolstore.cart.offHeap.maxBytes");
+    }
+
+    @Test
+    public void parksTheLeastRecentlyUsedCart() {
+        ShoppingCart cart = store.getOrCreate(first);
+        cart.addShoppingCartItem(item("329299", 2));
+
+        store.getOrCreate(second);
+
+        assertEquals(1, store.getResidentCarts());
+        assertEquals(1, store.getIdleCarts());
+        ShoppingCart restored = store.get(first);
+        assertNotSame(cart, restored);
+        assertEquals(2, restored.getShoppingCartItem("329299").getQuantity());
+    }
+
+    @Test
+    public void doesNotParkAnAcquiredCart() {
+        ShoppingCart cart = store.acquire(first);
+
+        store.getOrCreate(second);
+        assertEquals(2, store.getResidentCarts());
+        assertEquals(0, store.getIdleCarts());
+
+        // a change made while acquired must survive parking after the release
+        cart.addShoppingCartItem(item("165613", 3));
+        store.release(first, cart);
+        assertEquals(1, store.getIdleCarts());
+
+        assertEquals(3, store.get(first).getShoppingCartItem("165613").getQuantity());
+    }
+
+    @Test
+    public void acquiredCartIsTheLiveInstance() {
+        ShoppingCart cart = store.acquire(first);
+        try {
+            assertSame(cart, store.acquire(first));
+            store.release(first, cart);
+        } finally {
+            store.release(first, cart);
+        }
+        store.getOrCreate(second);
+        assertEquals(1, store.getIdleCarts());
+    }
+
+    private static ShoppingCartItem item(String itemId, int quantity) {
+        Product product = new Product();
+        product.setItemId(itemId);
+        ShoppingCartItem item = new ShoppingCartItem();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    // same spreading as ShoppingCartStore.segmentFor
+    private static int segmentOf(String cartId) {
+        int h = cartId.hashCode();
+        return (h ^ (h >>> 16)) & 15;
+    }
+}
@@ -0,0 +1,93 @@
+package com.redhat.coolstore.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import com.redhat.coolstore.model.Order;
+import com.redhat.coolstore.model.OrderItem;
+import com.redhat.coolstore.model.Product;
+import com.redhat.coolstore.model.ShoppingCart;
+import com.redhat.coolstore.model.ShoppingCartItem;
+
+/**
+ * Orders sent as JSON and as binary must read back the same, so producers and consumers can
+ * be switched between formats independently.
+ */
+public class OrderMessagesTest {
+
+    @Test
+    public void jsonAndBinaryOrdersReadTheSame() {
+        ShoppingCart cart = cart();
+
+        Order fromJson = OrderMessages.decode(OrderMessages.JSON_FORMAT, OrderMessages.encode(cart, OrderMessages.JSON_FORMAT));
+        Order fromBinary = OrderMessages.decode(OrderMessages.BINARY_FORMAT, OrderMessages.encode(cart, OrderMessages.BINARY_FORMAT));
+
+        assertOrder(fromJson);
+        assertOrder(fromBinary);
+    }
+
+    @Test
+    public void laterBinaryVersionWithLongerHeaderIsRead() {
+        byte[] v1 = Transformers.shoppingCartToBytes(cart());
+        int headerLength = ((v1[1] & 0xff) << 8) | (v1[2] & 0xff);
+
+        // version 2 appends a field to the header that version 1 readers do not know
+        ByteBuffer v2 = ByteBuffer.allocate(v1.length + 8);
+        v2.put((byte) 2);
+        v2.putShort((short) (headerLength + 8));
+        v2.put(v1, 3, headerLength);
+        v2.putLong(42L);
+        v2.put(v1, 3 + headerLength, v1.length - 3 - headerLength);
+
+        assertOrder(OrderMessages.decode("binary-v2", v2.array()));
+    }
+
+    @Test
+    public void binaryVersionZeroIsRejected() {
+        byte[] bytes = Transformers.shoppingCartToBytes(cart());
+        bytes[0] = 0;
+
+        assertThrows(IllegalArgumentException.class, () -> Transformers.bytesToOrder(bytes));
+    }
+
+    private static ShoppingCart cart() {
+        ShoppingCart cart = new ShoppingCart();
+        cart.addShoppingCartItem(item("329299", 1099, 2));
+        cart.addShoppingCartItem(item("165613", 2500, 1));
+        cart.setCartItemTotalCents(4698);
+        cart.setCartItemPromoSavingsCents(-250);
+        cart.setShippingTotalCents(1299);
+        cart.setShippingPromoSavingsCents(-1299);
+        cart.setCartTotalCents(4448);
+        return cart;
+    }
+
+    private static ShoppingCartItem item(String itemId, long priceCents, int quantity) {
+        Product product = new Product();
+        product.setItemId(itemId);
+        ShoppingCartItem item = new ShoppingCartItem();
+        item.setProduct(product);
+        item.setPriceCents(priceCents);
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    private static void assertOrder(Order order) {
+        assertEquals(44.48, order.getOrderValue(), 0.0);
+        assertEquals(46.98, order.getRetailPrice(), 0.0);
+        assertEquals(-2.50, order.getDiscount(), 0.0);
+        assertEquals(12.99, order.getShippingFee(), 0.0);
+        assertEquals(-12.99, order.getShippingDiscount(), 0.0);
+        assertEquals(2, order.getItemList().size());
+        OrderItem first = order.getItemList().get(0);
+        assertEquals("329299", first.getProductId());
+        assertEquals(2, first.getQuantity());
+        OrderItem second = order.getItemList().get(1);
+        assertEquals("165613", second.getProductId());
+        assertEquals(1, second.getQuantity());
+    }
+}
@@ -0,0 +1,90 @@
+package com.redhat.mta.examples.hotrod.repair.service;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Customer name searches against a {@link NameIndex} of {@code customers} names, for a
+ * two-letter term that is matched by scanning the names, a common trigram and a rarer
+ * longer term, plus renaming a customer. Last names are built from random syllables so
+ * the trigram posting lists are as uneven as real ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class NameIndexBenchmark {
+
+    private static final String[] FIRST_NAMES = {"James", "Mary", "Robert", "Patricia", "John", "Jennifer",
+            "Michael", "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph",
+            "Jessica", "Thomas", "Sarah", "Charles", "Karen", "Sven", "Johan", "Karl", "Anders", "Stefan",
+            "Martin", "Ingrid", "Astrid", "Lars", "Greta"};
+
+    private static final String[] SYLLABLES = {"an", "ber", "son", "ma", "ric", "ol", "sten", "ka", "lin",
+            "dor", "mi", "vet", "ho", "gar", "ne", "tu", "lef", "ra", "wik", "es", "bo", "qui", "zel", "pa"};
+
+    private static final int MAX_RESULTS = 20;
+
+    @Param({"1000000"})
+    int customers;
+
+    private NameIndex index;
+
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        random = new Random(42);
+        index = new NameIndex();
+        for (long id = 1; id <= customers; id++) {
+            index.put(id, firstName(), lastName());
+        }
+    }
+
+    @Benchmark
+    public List<Long> search(Term term) {
+        return index.search(term.term, MAX_RESULTS);
+    }
+
+    @Benchmark
+    public void rename() {
+        index.put(1 + random.nextInt(customers), firstName(), lastName());
+    }
+
+    private String firstName() {
+        return FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+    }
+
+    private String lastName() {
+        StringBuilder name = new StringBuilder();
+        int syllables = 2 + random.nextInt(2);
+        for (int i = 0; i < syllables; i++) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+    // a state of its own so that rename is not repeated for every term
+    @State(Scope.Benchmark)
+    public static class Term {
+
+        @Param({"ma", "son", "lefwik"})
+        String term;
+    }
+}
@@ -59,7 +59,8 @@ CREATE TABLE IF NOT EXISTS service_orders (
     mechanic_notes TEXT,
     customer_notes TEXT,
     warranty_months INTEGER,
-    is_warranty_work BOOLEAN NOT NULL DEFAULT false
+    is_warranty_work BOOLEAN NOT NULL DEFAULT false,
+    version BIGINT NOT NULL DEFAULT 0
 );
 
 -- Create service_items table
@@ -76,6 +77,16 @@ CREATE TABLE IF NOT EXISTS service_items (
     item_notes TEXT
 );
 
+-- The application allocates service item ids 20 at a time to batch inserts
+ALTER SEQUENCE service_items_service_item_id_seq INCREMENT BY 20;
+
+-- Create monthly_revenue rollup table, maintained as service orders complete
+CREATE TABLE IF NOT EXISTS monthly_revenue (
+    revenue_month INTEGER PRIMARY KEY,
+    revenue DECIMAL(12,2) NOT NULL,
+    order_count BIGINT NOT NULL
+);
+
 -- Create indexes for performance
 CREATE INDEX IF NOT EXISTS idx_customers_email ON customers(email);
 CREATE INDEX IF NOT EXISTS idx_customers_phone ON customers(phone_number);
@@ -86,4 +97,5 @@ CREATE INDEX IF NOT EXISTS idx_service_orders_customer ON service_orders(custome
 CREATE INDEX IF NOT EXISTS idx_service_orders_vehicle ON service_orders(vehicle_id);
 CREATE INDEX IF NOT EXISTS idx_service_orders_status ON service_orders(status);
 CREATE INDEX IF NOT EXISTS idx_service_orders_date ON service_orders(service_date);
+CREATE INDEX IF NOT EXISTS idx_service_orders_completion ON service_orders(actual_completion);
 CREATE INDEX IF NOT EXISTS idx_service_items_order ON service_items(service_order_id);
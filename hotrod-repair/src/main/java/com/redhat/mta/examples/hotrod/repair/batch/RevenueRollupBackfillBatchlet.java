@@ -0,0 +1,70 @@
+package com.redhat.mta.examples.hotrod.repair.batch;
+
+import com.redhat.mta.examples.hotrod.repair.service.RevenueRollupService;
+
+import javax.batch.api.AbstractBatchlet;
+import javax.batch.api.BatchProperty;
+import javax.batch.runtime.BatchStatus;
+import javax.ejb.EJB;
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.time.YearMonth;
+import java.util.logging.Logger;
+
+/**
+ * Rebuilds the monthly revenue rollup from the service orders, one month per transaction.
+ *
+ * The job parameters fromMonth and toMonth (yyyy-MM) limit the months rebuilt; by default
+ * every month from the first completed order up to the current one is rebuilt.
+ */
+@Named
+@Dependent
+public class RevenueRollupBackfillBatchlet extends AbstractBatchlet {
+
+    private static final Logger logger = Logger.getLogger(RevenueRollupBackfillBatchlet.class.getName());
+
+    @EJB
+    private RevenueRollupService revenueRollup;
+
+    @Inject
+    @BatchProperty
+    private String fromMonth;
+
+    @Inject
+    @BatchProperty
+    private String toMonth;
+
+    private volatile boolean stopped;
+
+    @Override
+    public String process() {
+        YearMonth from = isSet(fromMonth) ? YearMonth.parse(fromMonth) : revenueRollup.getFirstCompletedMonth();
+        YearMonth to = isSet(toMonth) ? YearMonth.parse(toMonth) : YearMonth.now();
+        if (from == null) {
+            logger.info("No completed service orders, nothing to back-fill");
+            return BatchStatus.COMPLETED.name();
+        }
+
+        int months = 0;
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            if (stopped) {
+                logger.info("Revenue rollup back-fill stopped before " + month);
+                return BatchStatus.STOPPED.name();
+            }
+            revenueRollup.rebuildMonth(month);
+            months++;
+        }
+        logger.info("Back-filled " + months + " months of revenue from " + from + " to " + to);
+        return BatchStatus.COMPLETED.name();
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+    }
+
+    private static boolean isSet(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+}
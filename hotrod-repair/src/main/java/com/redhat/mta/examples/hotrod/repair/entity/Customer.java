@@ -22,7 +22,22 @@ import java.util.List;
 @NamedQueries({
     @NamedQuery(name = "Customer.findAll", query = "SELECT c FROM Customer c"),
     @NamedQuery(name = "Customer.findByEmail", query = "SELECT c FROM Customer c WHERE c.email = :email"),
-    @NamedQuery(name = "Customer.findByPhone", query = "SELECT c FROM Customer c WHERE c.phoneNumber = :phone")
+    @NamedQuery(name = "Customer.findByPhone", query = "SELECT c FROM Customer c WHERE c.phoneNumber = :phone"),
+    @NamedQuery(name = "Customer.findPageAfter",
+                query = "SELECT c FROM Customer c WHERE c.customerId > :afterCustomerId ORDER BY c.customerId"),
+    @NamedQuery(name = "Customer.findNamesAfter",
+                query = "SELECT c.customerId, c.firstName, c.lastName FROM Customer c "
+                      + "WHERE c.customerId > :afterCustomerId ORDER BY c.customerId"),
+    @NamedQuery(name = "Customer.findByIds", query = "SELECT c FROM Customer c WHERE c.customerId IN :customerIds"),
+    @NamedQuery(name = "Customer.findAllWithVehicles",
+                query = "SELECT DISTINCT c FROM Customer c LEFT JOIN FETCH c.vehicles"),
+    @NamedQuery(name = "Customer.findAllWithServiceOrders",
+                query = "SELECT DISTINCT c FROM Customer c LEFT JOIN FETCH c.serviceOrders so LEFT JOIN FETCH so.vehicle"),
+    @NamedQuery(name = "Customer.findByIdWithVehicles",
+                query = "SELECT DISTINCT c FROM Customer c LEFT JOIN FETCH c.vehicles WHERE c.customerId = :customerId"),
+    @NamedQuery(name = "Customer.findByIdWithServiceOrders",
+                query = "SELECT DISTINCT c FROM Customer c LEFT JOIN FETCH c.serviceOrders so LEFT JOIN FETCH so.vehicle "
+                      + "WHERE c.customerId = :customerId")
 })
 public class Customer implements Serializable {
     
@@ -0,0 +1,76 @@
+package com.redhat.mta.examples.hotrod.repair.entity;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Revenue of the service orders completed in one calendar month.
+ *
+ * Rows are kept up to date by {@link com.redhat.mta.examples.hotrod.repair.service.RevenueRollupService}
+ * as orders complete, so revenue dashboards read one row per month instead of aggregating
+ * the service orders.
+ */
+@Entity
+@Table(name = "monthly_revenue")
+@NamedQueries({
+    @NamedQuery(name = "MonthlyRevenue.findRange",
+                query = "SELECT r FROM MonthlyRevenue r WHERE r.revenueMonth BETWEEN :fromMonth AND :toMonth"),
+    @NamedQuery(name = "MonthlyRevenue.count", query = "SELECT COUNT(r) FROM MonthlyRevenue r")
+})
+public class MonthlyRevenue implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // year * 100 + month, e.g. 202410
+    @Id
+    @Column(name = "revenue_month")
+    private Integer revenueMonth;
+
+    @Column(name = "revenue", nullable = false, precision = 12, scale = 2)
+    private BigDecimal revenue;
+
+    @Column(name = "order_count", nullable = false)
+    private Long orderCount;
+
+    public MonthlyRevenue() {}
+
+    public MonthlyRevenue(Integer revenueMonth, BigDecimal revenue, Long orderCount) {
+        this.revenueMonth = revenueMonth;
+        this.revenue = revenue;
+        this.orderCount = orderCount;
+    }
+
+    public Integer getRevenueMonth() {
+        return revenueMonth;
+    }
+
+    public void setRevenueMonth(Integer revenueMonth) {
+        this.revenueMonth = revenueMonth;
+    }
+
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(BigDecimal revenue) {
+        this.revenue = revenue;
+    }
+
+    public Long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(Long orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    @Override
+    public String toString() {
+        return "MonthlyRevenue{" +
+                "revenueMonth=" + revenueMonth +
+                ", revenue=" + revenue +
+                ", orderCount=" + orderCount +
+                '}';
+    }
+}
@@ -21,8 +21,13 @@ public class ServiceItem implements Serializable {
     
     private static final long serialVersionUID = 1L;
 
+    // Sequence ids let Hibernate batch item inserts, which it cannot do with IDENTITY.
+    // Batching itself is turned on in persistence.xml (hibernate.jdbc.batch_size=20 with
+    // hibernate.order_inserts); the allocation size matches the sequence increment and that batch size
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "service_item_seq")
+    @SequenceGenerator(name = "service_item_seq", sequenceName = "service_items_service_item_id_seq",
+                       allocationSize = 20)
     @Column(name = "service_item_id")
     private Long serviceItemId;
 
@@ -18,12 +18,26 @@ import java.util.List;
  * - @Temporal annotation patterns
  */
 @Entity
-@Table(name = "service_orders")
+@Table(name = "service_orders",
+       indexes = @Index(name = "idx_service_orders_completion", columnList = "actual_completion"))
 @NamedQueries({
     @NamedQuery(name = "ServiceOrder.findByStatus", query = "SELECT s FROM ServiceOrder s WHERE s.status = :status"),
     @NamedQuery(name = "ServiceOrder.findByCustomer", query = "SELECT s FROM ServiceOrder s WHERE s.customer.customerId = :customerId"),
     @NamedQuery(name = "ServiceOrder.findByDateRange", 
-                query = "SELECT s FROM ServiceOrder s WHERE s.serviceDate BETWEEN :startDate AND :endDate")
+                query = "SELECT s FROM ServiceOrder s WHERE s.serviceDate BETWEEN :startDate AND :endDate"),
+    @NamedQuery(name = "ServiceOrder.findFirstCompletion",
+                query = "SELECT MIN(s.actualCompletion) FROM ServiceOrder s WHERE s.status = :status"),
+    @NamedQuery(name = "ServiceOrder.completedTotalsBetween",
+                query = "SELECT SUM(s.actualCost), COUNT(s) FROM ServiceOrder s WHERE s.status = :status "
+                      + "AND s.actualCompletion >= :start AND s.actualCompletion < :end"),
+    @NamedQuery(name = "ServiceOrder.findByIdWithItems",
+                query = "SELECT DISTINCT s FROM ServiceOrder s JOIN FETCH s.customer JOIN FETCH s.vehicle "
+                      + "LEFT JOIN FETCH s.serviceItems WHERE s.serviceOrderId = :serviceOrderId"),
+    @NamedQuery(name = "ServiceOrder.findByStatusFetchParties",
+                query = "SELECT s FROM ServiceOrder s JOIN FETCH s.customer JOIN FETCH s.vehicle WHERE s.status = :status"),
+    @NamedQuery(name = "ServiceOrder.findByStatusWithItems",
+                query = "SELECT DISTINCT s FROM ServiceOrder s JOIN FETCH s.customer JOIN FETCH s.vehicle "
+                      + "LEFT JOIN FETCH s.serviceItems WHERE s.status = :status")
 })
 public class ServiceOrder implements Serializable {
     
@@ -84,6 +98,12 @@ public class ServiceOrder implements Serializable {
     @Column(name = "is_warranty_work", nullable = false)
     private Boolean isWarrantyWork = Boolean.FALSE;
 
+    // Incremented on every update so concurrent edits of one order, such as adding items
+    // and adjusting the total, fail instead of overwriting each other
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     // Deprecated ManyToOne relationships with EAGER fetch
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "customer_id", nullable = false)
@@ -235,6 +255,14 @@ public class ServiceOrder implements Serializable {
         this.isWarrantyWork = isWarrantyWork;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Customer getCustomer() {
         return customer;
     }
@@ -0,0 +1,23 @@
+package com.redhat.mta.examples.hotrod.repair.service;
+
+/**
+ * Associations of a {@link com.redhat.mta.examples.hotrod.repair.entity.Customer} to load
+ * together with it, so callers can use them after the transaction without lazy loading.
+ *
+ * Each plan is read with a fixed number of statements however many customers are returned:
+ * one for {@code BASIC} and {@code VEHICLES}, and one more for each further collection.
+ */
+public enum CustomerFetchPlan {
+
+    /** The customer row only. */
+    BASIC,
+
+    /** The customer and their vehicles. */
+    VEHICLES,
+
+    /** The customer and their service orders, each with its vehicle. */
+    SERVICE_ORDERS,
+
+    /** The customer, their vehicles and their service orders. */
+    VEHICLES_AND_SERVICE_ORDERS
+}
@@ -0,0 +1,176 @@
+package com.redhat.mta.examples.hotrod.repair.service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a {@link NameIndex} of every customer's name for {@link CustomerService} searches.
+ *
+ * The index is loaded in pages by a timer right after deployment, and a load that fails is
+ * started again a minute later; until a load finishes {@link #search} returns null and
+ * callers search the database instead. Customer changes reach the index once their
+ * transaction commits, and a change made while the load is running wins over the row the
+ * load read for the same customer.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class CustomerNameIndex {
+
+    private static final Logger logger = Logger.getLogger(CustomerNameIndex.class.getName());
+
+    private static final int LOAD_PAGE_SIZE = 5000;
+
+    private static final long LOAD_RETRY_MILLIS = 60_000L;
+
+    @PersistenceContext(unitName = "hotrodsPU")
+    private EntityManager entityManager;
+
+    @Resource
+    private TimerService timerService;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionRegistry;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NameIndex index = new NameIndex();
+
+    private volatile boolean ready;
+
+    // customers changed while the initial load runs; set to null once it has finished
+    private Set<Long> changedDuringLoad = new HashSet<>();
+
+    @PostConstruct
+    void scheduleLoad() {
+        timerService.createSingleActionTimer(0, new TimerConfig(null, false));
+    }
+
+    /**
+     * Reads every customer's name a page at a time, outside a transaction so the load is not
+     * bound by the transaction timeout.
+     */
+    @Timeout
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    void load() {
+        long start = System.currentTimeMillis();
+        try {
+            long lastCustomerId = 0L;
+            List<Object[]> rows;
+            do {
+                rows = entityManager.createNamedQuery("Customer.findNamesAfter", Object[].class)
+                        .setParameter("afterCustomerId", lastCustomerId)
+                        .setMaxResults(LOAD_PAGE_SIZE)
+                        .getResultList();
+                lock.writeLock().lock();
+                try {
+                    for (Object[] row : rows) {
+                        lastCustomerId = (Long) row[0];
+                        if (!changedDuringLoad.contains(lastCustomerId)) {
+                            index.put(lastCustomerId, (String) row[1], (String) row[2]);
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } while (rows.size() == LOAD_PAGE_SIZE);
+
+            lock.writeLock().lock();
+            try {
+                changedDuringLoad = null;
+                ready = true;
+                logger.info("Customer name index loaded " + index.size() + " customers in "
+                        + (System.currentTimeMillis() - start) + " ms");
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Unable to load the customer name index, name searches will use the database"
+                    + " until it is loaded; retrying in " + LOAD_RETRY_MILLIS + " ms", e);
+            // names already loaded stay, and changes recorded so far still win over the retry
+            timerService.createSingleActionTimer(LOAD_RETRY_MILLIS, new TimerConfig(null, false));
+        }
+    }
+
+    /**
+     * Returns the IDs of at most maxResults customers whose first or last name contains the
+     * term, ordered by last name and then first name, or null while the index is loading.
+     */
+    public List<Long> search(String term, int maxResults) {
+        if (!ready) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return index.search(term, maxResults);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void customerSaved(Long customerId, String firstName, String lastName) {
+        afterCommit(customerId, firstName, lastName, false);
+    }
+
+    public void customerRemoved(Long customerId) {
+        afterCommit(customerId, null, null, true);
+    }
+
+    private void afterCommit(final Long customerId, final String firstName, final String lastName,
+                             final boolean removed) {
+        if (transactionRegistry.getTransactionKey() == null) {
+            apply(customerId, firstName, lastName, removed);
+            return;
+        }
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    apply(customerId, firstName, lastName, removed);
+                }
+            }
+        });
+    }
+
+    private void apply(Long customerId, String firstName, String lastName, boolean removed) {
+        lock.writeLock().lock();
+        try {
+            if (changedDuringLoad != null) {
+                changedDuringLoad.add(customerId);
+            }
+            if (removed) {
+                index.remove(customerId);
+            } else {
+                index.put(customerId, firstName, lastName);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
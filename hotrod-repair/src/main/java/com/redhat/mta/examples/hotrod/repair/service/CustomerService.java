@@ -3,6 +3,7 @@ package com.redhat.mta.examples.hotrod.repair.service;
 import com.redhat.mta.examples.hotrod.repair.entity.Customer;
 import com.redhat.mta.examples.hotrod.repair.entity.Vehicle;
 
+import javax.ejb.EJB;
 import javax.ejb.Local;
 import javax.ejb.Remote;
 import javax.ejb.Stateless;
@@ -10,8 +11,11 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -33,6 +37,9 @@ public class CustomerService implements CustomerServiceLocal, CustomerServiceRem
     @PersistenceContext(unitName = "hotrodsPU")
     private EntityManager entityManager;
 
+    @EJB
+    private CustomerNameIndex nameIndex;
+
     @Override
     public Customer createCustomer(Customer customer) {
         logger.info("Creating new customer: " + customer.getEmail());
@@ -51,6 +58,7 @@ public class CustomerService implements CustomerServiceLocal, CustomerServiceRem
         
         entityManager.persist(customer);
         entityManager.flush(); // Deprecated pattern - should rely on transaction boundary
+        nameIndex.customerSaved(customer.getCustomerId(), customer.getFirstName(), customer.getLastName());
         
         logger.info("Customer created successfully with ID: " + customer.getCustomerId());
         return customer;
@@ -78,6 +86,8 @@ public class CustomerService implements CustomerServiceLocal, CustomerServiceRem
         
         Customer mergedCustomer = entityManager.merge(existingCustomer);
         entityManager.flush(); // Deprecated explicit flush
+        nameIndex.customerSaved(mergedCustomer.getCustomerId(), mergedCustomer.getFirstName(),
+                mergedCustomer.getLastName());
         
         logger.info("Customer updated successfully: " + mergedCustomer.getCustomerId());
         return mergedCustomer;
@@ -85,16 +95,29 @@ public class CustomerService implements CustomerServiceLocal, CustomerServiceRem
 
     @Override
     public Customer findCustomerById(Long customerId) {
-        logger.info("Finding customer by ID: " + customerId);
-        
-        Customer customer = entityManager.find(Customer.class, customerId);
-        if (customer != null) {
-            // Deprecated eager loading pattern
-            customer.getVehicles().size(); // Force lazy loading
-            customer.getServiceOrders().size(); // Force lazy loading
+        return findCustomerById(customerId, CustomerFetchPlan.VEHICLES_AND_SERVICE_ORDERS);
+    }
+
+    @Override
+    public Customer findCustomerById(Long customerId, CustomerFetchPlan plan) {
+        logger.info("Finding customer by ID: " + customerId + " with " + plan);
+        
+        switch (plan) {
+            case BASIC:
+                return entityManager.find(Customer.class, customerId);
+            case VEHICLES:
+                return findSingleCustomer("Customer.findByIdWithVehicles", customerId);
+            case SERVICE_ORDERS:
+                return findSingleCustomer("Customer.findByIdWithServiceOrders", customerId);
+            default:
+                // vehicles and service orders are both bags and cannot be joined in one query;
+                // the second query fills in the other collection of the same managed instance
+                Customer customer = findSingleCustomer("Customer.findByIdWithVehicles", customerId);
+                if (customer != null) {
+                    findSingleCustomer("Customer.findByIdWithServiceOrders", customerId);
+                }
+                return customer;
         }
-        
-        return customer;
     }
 
     @Override
@@ -111,18 +134,37 @@ public class CustomerService implements CustomerServiceLocal, CustomerServiceRem
 
     @Override
     public List<Customer> findAllCustomers() {
-        logger.info("Finding all customers");
-        
-        // Using deprecated named query
-        TypedQuery<Customer> query = entityManager.createNamedQuery("Customer.findAll", Customer.class);
-        List<Customer> customers = query.getResultList();
-        
-        // Deprecated pattern - forcing lazy loading in service layer
-        for (Customer customer : customers) {
-            customer.getVehicles().size();
+        return findAllCustomers(CustomerFetchPlan.VEHICLES);
+    }
+
+    @Override
+    public List<Customer> findAllCustomers(CustomerFetchPlan plan) {
+        logger.info("Finding all customers with " + plan);
+        
+        switch (plan) {
+            case BASIC:
+                return entityManager.createNamedQuery("Customer.findAll", Customer.class).getResultList();
+            case VEHICLES:
+                return entityManager.createNamedQuery("Customer.findAllWithVehicles", Customer.class).getResultList();
+            case SERVICE_ORDERS:
+                return entityManager.createNamedQuery("Customer.findAllWithServiceOrders", Customer.class).getResultList();
+            default:
+                List<Customer> customers = entityManager.createNamedQuery("Customer.findAllWithVehicles", Customer.class)
+                        .getResultList();
+                entityManager.createNamedQuery("Customer.findAllWithServiceOrders", Customer.class).getResultList();
+                return customers;
         }
-        
-        return customers;
+    }
+
+    @Override
+    public List<Customer> findCustomersAfter(Long afterCustomerId, int maxResults) {
+        logger.fine("Finding " + maxResults + " customers after ID: " + afterCustomerId);
+        
+        // keyset page on the primary key: each page is one index range scan, however deep
+        return entityManager.createNamedQuery("Customer.findPageAfter", Customer.class)
+                .setParameter("afterCustomerId", afterCustomerId != null ? afterCustomerId : 0L)
+                .setMaxResults(maxResults)
+                .getResultList();
     }
 
     @Override
@@ -175,6 +217,7 @@ public class CustomerService implements CustomerServiceLocal, CustomerServiceRem
         
         entityManager.remove(customer);
         entityManager.flush(); // Deprecated explicit flush
+        nameIndex.customerRemoved(customerId);
         
         logger.info("Customer deleted: " + customerId);
     }
@@ -189,19 +232,55 @@ public class CustomerService implements CustomerServiceLocal, CustomerServiceRem
     }
 
     @Override
-    public List<Customer> searchCustomersByName(String searchTerm) {
+    public List<Customer> searchCustomersByName(String searchTerm, int maxResults) {
         logger.info("Searching customers by name: " + searchTerm);
         
+        List<Long> customerIds = searchCustomerIdsByName(searchTerm, maxResults);
+        if (customerIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        Map<Long, Customer> customersById = new HashMap<>();
+        for (Customer customer : entityManager.createNamedQuery("Customer.findByIds", Customer.class)
+                .setParameter("customerIds", customerIds)
+                .getResultList()) {
+            customersById.put(customer.getCustomerId(), customer);
+        }
+        
+        // keep the ranking of the search
+        List<Customer> customers = new ArrayList<>(customerIds.size());
+        for (Long customerId : customerIds) {
+            Customer customer = customersById.get(customerId);
+            if (customer != null) {
+                customers.add(customer);
+            }
+        }
+        return customers;
+    }
+
+    @Override
+    public List<Long> searchCustomerIdsByName(String searchTerm, int maxResults) {
+        List<Long> customerIds = nameIndex.search(searchTerm, maxResults);
+        if (customerIds != null) {
+            return customerIds;
+        }
+        
+        logger.info("Customer name index is still loading, searching the database");
+        
         // Deprecated string concatenation in queries
-        String queryString = "SELECT c FROM Customer c WHERE " +
+        String queryString = "SELECT c.customerId, c.firstName, c.lastName FROM Customer c WHERE " +
                            "LOWER(c.firstName) LIKE :searchTerm OR " +
-                           "LOWER(c.lastName) LIKE :searchTerm " +
-                           "ORDER BY c.lastName, c.firstName";
+                           "LOWER(c.lastName) LIKE :searchTerm";
         
-        TypedQuery<Customer> query = entityManager.createQuery(queryString, Customer.class);
-        query.setParameter("searchTerm", "%" + searchTerm.toLowerCase() + "%");
+        TypedQuery<Object[]> query = entityManager.createQuery(queryString, Object[].class);
+        query.setParameter("searchTerm", "%" + NameIndex.normalize(searchTerm) + "%");
         
-        return query.getResultList();
+        // ranked here rather than with ORDER BY, whose collation need not match the index
+        NameIndex.Ranking ranking = new NameIndex.Ranking(searchTerm, maxResults);
+        for (Object[] row : query.getResultList()) {
+            ranking.offer((Long) row[0], (String) row[1], (String) row[2]);
+        }
+        return ranking.customerIds();
     }
 
     @Override
@@ -216,4 +295,11 @@ public class CustomerService implements CustomerServiceLocal, CustomerServiceRem
         int updatedRows = query.executeUpdate();
         logger.info("Updated last visit date, rows affected: " + updatedRows);
     }
+
+    private Customer findSingleCustomer(String queryName, Long customerId) {
+        List<Customer> customers = entityManager.createNamedQuery(queryName, Customer.class)
+                .setParameter("customerId", customerId)
+                .getResultList();
+        return customers.isEmpty() ? null : customers.get(0);
+    }
 }
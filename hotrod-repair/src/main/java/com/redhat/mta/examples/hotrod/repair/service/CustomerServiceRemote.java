@@ -21,10 +21,20 @@ public interface CustomerServiceRemote {
     
     Customer findCustomerById(Long customerId);
     
+    Customer findCustomerById(Long customerId, CustomerFetchPlan plan);
+    
     Customer findCustomerByEmail(String email);
     
     List<Customer> findAllCustomers();
     
+    List<Customer> findAllCustomers(CustomerFetchPlan plan);
+    
+    /**
+     * Returns up to maxResults customers with an ID greater than afterCustomerId, in ID order.
+     * Pass null to start from the first customer and the last returned ID to get the next page.
+     */
+    List<Customer> findCustomersAfter(Long afterCustomerId, int maxResults);
+    
     List<Customer> findActiveCustomers();
     
     void deactivateCustomer(Long customerId);
@@ -33,7 +43,18 @@ public interface CustomerServiceRemote {
     
     Long getCustomerCount();
     
-    List<Customer> searchCustomersByName(String searchTerm);
+    /**
+     * Returns at most maxResults customers whose first or last name contains the search term,
+     * in the order of {@link #searchCustomerIdsByName}. Ask for one more than will be shown
+     * to tell whether the results were cut off.
+     */
+    List<Customer> searchCustomersByName(String searchTerm, int maxResults);
+    
+    /**
+     * Returns the IDs of at most maxResults customers whose first or last name contains the
+     * search term, ordered by last name, first name and ID, ignoring case.
+     */
+    List<Long> searchCustomerIdsByName(String searchTerm, int maxResults);
     
     void updateLastVisitDate(Long customerId);
 }
@@ -0,0 +1,251 @@
+package com.redhat.mta.examples.hotrod.repair.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory trigram index over customer first and last names.
+ *
+ * Names are lower-cased and every three-character substring of either name points at the
+ * customer through a sorted posting list. A search intersects the posting lists of the
+ * term's trigrams, shortest first, and confirms each candidate with a substring check, so
+ * it answers the same question as {@code LOWER(name) LIKE '%term%'} without the table scan.
+ * Terms shorter than three characters are matched against the names held in memory.
+ *
+ * Not thread safe; {@link CustomerNameIndex} guards it.
+ */
+final class NameIndex {
+
+    private static final int GRAM = 3;
+
+    private static final Comparator<Names> ORDER = Comparator
+            .comparing((Names n) -> n.lastName)
+            .thenComparing(n -> n.firstName)
+            .thenComparingLong(n -> n.customerId);
+
+    private final Map<Long, Names> names = new HashMap<>();
+
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    void put(long customerId, String firstName, String lastName) {
+        Names updated = new Names(customerId, normalize(firstName), normalize(lastName));
+        Names previous = names.put(customerId, updated);
+        Set<String> oldGrams = previous != null ? previous.trigrams() : Collections.<String>emptySet();
+        Set<String> newGrams = updated.trigrams();
+        for (String gram : oldGrams) {
+            if (!newGrams.contains(gram)) {
+                removePosting(gram, customerId);
+            }
+        }
+        // grams the old name also had are re-added too, to point them at the new entry
+        for (String gram : newGrams) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(updated);
+        }
+    }
+
+    void remove(long customerId) {
+        Names previous = names.remove(customerId);
+        if (previous != null) {
+            for (String gram : previous.trigrams()) {
+                removePosting(gram, customerId);
+            }
+        }
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    /**
+     * Returns the IDs of at most maxResults customers whose first or last name contains the
+     * term, ordered by last name and then first name.
+     */
+    List<Long> search(String term, int maxResults) {
+        Ranking ranking = new Ranking(term, maxResults);
+        String needle = ranking.needle;
+        if (needle.isEmpty() || maxResults <= 0) {
+            return new ArrayList<>();
+        }
+
+        if (needle.length() < GRAM) {
+            for (Names candidate : names.values()) {
+                ranking.offer(candidate);
+            }
+        } else {
+            Set<String> grams = trigrams(needle, new HashSet<String>());
+            Postings[] lists = new Postings[grams.size()];
+            int i = 0;
+            for (String gram : grams) {
+                Postings list = postings.get(gram);
+                if (list == null) {
+                    return new ArrayList<>();
+                }
+                lists[i++] = list;
+            }
+            Arrays.sort(lists, Comparator.comparingInt((Postings p) -> p.size));
+
+            Postings shortest = lists[0];
+            candidates:
+            for (int c = 0; c < shortest.size; c++) {
+                Names candidate = shortest.names[c];
+                for (int l = 1; l < lists.length; l++) {
+                    if (!lists[l].contains(candidate.customerId)) {
+                        continue candidates;
+                    }
+                }
+                ranking.offer(candidate);
+            }
+        }
+        return ranking.customerIds();
+    }
+
+    static String normalize(String name) {
+        return name != null ? name.trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static Set<String> trigrams(String value, Set<String> grams) {
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private void removePosting(String gram, long customerId) {
+        Postings list = postings.get(gram);
+        if (list != null && list.remove(customerId) && list.size == 0) {
+            postings.remove(gram);
+        }
+    }
+
+    /**
+     * Keeps the best ranked of the customers offered to it that match a term, in the order
+     * of {@link NameIndex#search}. The database fallback feeds its rows through one so both
+     * paths return the same customers in the same order.
+     */
+    static final class Ranking {
+        private final String needle;
+        private final int maxResults;
+        // max-heap on the ranking, so the worst of the current top entries is dropped first
+        private final PriorityQueue<Names> top;
+
+        Ranking(String term, int maxResults) {
+            this.needle = normalize(term);
+            this.maxResults = maxResults;
+            this.top = new PriorityQueue<>(Math.max(1, maxResults), ORDER.reversed());
+        }
+
+        void offer(long customerId, String firstName, String lastName) {
+            offer(new Names(customerId, normalize(firstName), normalize(lastName)));
+        }
+
+        private void offer(Names candidate) {
+            if (needle.isEmpty() || !candidate.matches(needle)) {
+                return;
+            }
+            if (top.size() < maxResults) {
+                top.add(candidate);
+            } else if (maxResults > 0 && ORDER.compare(candidate, top.peek()) < 0) {
+                top.poll();
+                top.add(candidate);
+            }
+        }
+
+        List<Long> customerIds() {
+            List<Names> ranked = new ArrayList<>(top);
+            ranked.sort(ORDER);
+            List<Long> ids = new ArrayList<>(ranked.size());
+            for (Names match : ranked) {
+                ids.add(match.customerId);
+            }
+            return ids;
+        }
+    }
+
+    private static final class Names {
+        final long customerId;
+        final String firstName;
+        final String lastName;
+
+        Names(long customerId, String firstName, String lastName) {
+            this.customerId = customerId;
+            this.firstName = firstName;
+            this.lastName = lastName;
+        }
+
+        boolean matches(String needle) {
+            return firstName.contains(needle) || lastName.contains(needle);
+        }
+
+        Set<String> trigrams() {
+            return NameIndex.trigrams(lastName, NameIndex.trigrams(firstName, new HashSet<String>()));
+        }
+    }
+
+    /**
+     * The customers holding one trigram, sorted by ID. IDs are generated in ascending order,
+     * so adds almost always append. Entries point straight at the names so a search does not
+     * go back through the ID map.
+     */
+    private static final class Postings {
+        Names[] names = new Names[4];
+        int size;
+
+        void add(Names entry) {
+            int at = indexOf(entry.customerId);
+            if (at >= 0) {
+                names[at] = entry;
+                return;
+            }
+            at = -at - 1;
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+            }
+            System.arraycopy(names, at, names, at + 1, size - at);
+            names[at] = entry;
+            size++;
+        }
+
+        boolean remove(long customerId) {
+            int at = indexOf(customerId);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(names, at + 1, names, at, size - at - 1);
+            names[--size] = null;
+            return true;
+        }
+
+        boolean contains(long customerId) {
+            return indexOf(customerId) >= 0;
+        }
+
+        private int indexOf(long customerId) {
+            if (size == 0 || customerId > names[size - 1].customerId) {
+                return -size - 1;
+            }
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midId = names[mid].customerId;
+                if (midId < customerId) {
+                    low = mid + 1;
+                } else if (midId > customerId) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -low - 1;
+        }
+    }
+}
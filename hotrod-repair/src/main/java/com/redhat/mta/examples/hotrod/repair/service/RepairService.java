@@ -10,12 +10,14 @@ import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceContext;
-import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import java.math.BigDecimal;
+import java.time.YearMonth;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -39,12 +41,16 @@ public class RepairService {
     @EJB
     private CustomerServiceLocal customerService;
 
+    @EJB
+    private RevenueRollupService revenueRollup;
+
     @TransactionAttribute(TransactionAttributeType.REQUIRED)
     public ServiceOrder createServiceOrder(ServiceOrder serviceOrder) {
         logger.info("Creating new service order: " + serviceOrder.getOrderNumber());
         
         // Validate customer and vehicle exist
-        Customer customer = customerService.findCustomerById(serviceOrder.getCustomer().getCustomerId());
+        Customer customer = customerService.findCustomerById(serviceOrder.getCustomer().getCustomerId(),
+                CustomerFetchPlan.BASIC);
         if (customer == null) {
             throw new IllegalArgumentException("Customer not found");
         }
@@ -76,6 +82,14 @@ public class RepairService {
         if (existingOrder == null) {
             throw new IllegalArgumentException("Service order not found");
         }
+        if (serviceOrder.getVersion() != null && !serviceOrder.getVersion().equals(existingOrder.getVersion())) {
+            throw new OptimisticLockException("Service order was changed concurrently: "
+                    + serviceOrder.getServiceOrderId());
+        }
+        
+        boolean wasRevenue = countsAsRevenue(existingOrder);
+        Date previousCompletion = existingOrder.getActualCompletion();
+        BigDecimal previousCost = existingOrder.getActualCost();
         
         // Deprecated manual property copying
         existingOrder.setServiceDescription(serviceOrder.getServiceDescription());
@@ -89,6 +103,7 @@ public class RepairService {
         existingOrder.setCustomerNotes(serviceOrder.getCustomerNotes());
         existingOrder.setWarrantyMonths(serviceOrder.getWarrantyMonths());
         existingOrder.setIsWarrantyWork(serviceOrder.getIsWarrantyWork());
+        updateRevenueRollup(wasRevenue, previousCompletion, previousCost, existingOrder);
         
         ServiceOrder updatedOrder = entityManager.merge(existingOrder);
         entityManager.flush(); // Deprecated explicit flush
@@ -98,34 +113,37 @@ public class RepairService {
     }
 
     public ServiceOrder findServiceOrderById(Long serviceOrderId) {
-        logger.info("Finding service order by ID: " + serviceOrderId);
+        return findServiceOrderById(serviceOrderId, ServiceOrderFetchPlan.ITEMS);
+    }
+
+    public ServiceOrder findServiceOrderById(Long serviceOrderId, ServiceOrderFetchPlan plan) {
+        logger.info("Finding service order by ID: " + serviceOrderId + " with " + plan);
         
-        ServiceOrder serviceOrder = entityManager.find(ServiceOrder.class, serviceOrderId);
-        if (serviceOrder != null) {
-            // Deprecated eager loading pattern
-            serviceOrder.getServiceItems().size(); // Force lazy loading
-            serviceOrder.getCustomer().getFirstName(); // Force lazy loading
-            serviceOrder.getVehicle().getMake(); // Force lazy loading
+        if (plan == ServiceOrderFetchPlan.BASIC) {
+            // customer and vehicle are EAGER and joined by find itself
+            return entityManager.find(ServiceOrder.class, serviceOrderId);
         }
         
-        return serviceOrder;
+        List<ServiceOrder> orders = entityManager.createNamedQuery("ServiceOrder.findByIdWithItems", ServiceOrder.class)
+                .setParameter("serviceOrderId", serviceOrderId)
+                .getResultList();
+        return orders.isEmpty() ? null : orders.get(0);
     }
 
     public List<ServiceOrder> findServiceOrdersByStatus(ServiceOrder.ServiceStatus status) {
-        logger.info("Finding service orders by status: " + status);
+        return findServiceOrdersByStatus(status, ServiceOrderFetchPlan.ITEMS);
+    }
+
+    public List<ServiceOrder> findServiceOrdersByStatus(ServiceOrder.ServiceStatus status, ServiceOrderFetchPlan plan) {
+        logger.info("Finding service orders by status: " + status + " with " + plan);
         
-        // Using deprecated named query
-        TypedQuery<ServiceOrder> query = entityManager.createNamedQuery("ServiceOrder.findByStatus", ServiceOrder.class);
+        String queryName = plan == ServiceOrderFetchPlan.ITEMS
+                ? "ServiceOrder.findByStatusWithItems"
+                : "ServiceOrder.findByStatusFetchParties";
+        TypedQuery<ServiceOrder> query = entityManager.createNamedQuery(queryName, ServiceOrder.class);
         query.setParameter("status", status);
         
-        List<ServiceOrder> orders = query.getResultList();
-        
-        // Deprecated pattern - forcing lazy loading in service layer
-        for (ServiceOrder order : orders) {
-            order.getServiceItems().size();
-        }
-        
-        return orders;
+        return query.getResultList();
     }
 
     public List<ServiceOrder> findServiceOrdersByCustomer(Long customerId) {
@@ -160,16 +178,39 @@ public class RepairService {
         serviceItem.calculateTotalPrice();
         
         entityManager.persist(serviceItem);
-        
-        // Deprecated pattern - manual total recalculation
-        recalculateServiceOrderTotal(serviceOrder);
-        
-        entityManager.flush(); // Deprecated explicit flush
+        adjustServiceOrderTotal(serviceOrder, serviceItem.getTotalPrice());
         
         logger.info("Service item added with ID: " + serviceItem.getServiceItemId());
         return serviceItem;
     }
 
+    /**
+     * Adds all items to the order in one transaction. The inserts go out in JDBC batches
+     * when the transaction commits and the order total is updated once.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public List<ServiceItem> addServiceItems(Long serviceOrderId, List<ServiceItem> serviceItems) {
+        logger.info("Adding " + serviceItems.size() + " service items to order: " + serviceOrderId);
+        
+        ServiceOrder serviceOrder = entityManager.find(ServiceOrder.class, serviceOrderId);
+        if (serviceOrder == null) {
+            throw new IllegalArgumentException("Service order not found");
+        }
+        
+        BigDecimal added = BigDecimal.ZERO;
+        for (ServiceItem serviceItem : serviceItems) {
+            serviceItem.setServiceOrder(serviceOrder);
+            serviceItem.calculateTotalPrice();
+            entityManager.persist(serviceItem);
+            if (serviceItem.getTotalPrice() != null) {
+                added = added.add(serviceItem.getTotalPrice());
+            }
+        }
+        adjustServiceOrderTotal(serviceOrder, added);
+        
+        return serviceItems;
+    }
+
     @TransactionAttribute(TransactionAttributeType.REQUIRED)
     public void removeServiceItem(Long serviceItemId) {
         logger.info("Removing service item: " + serviceItemId);
@@ -181,11 +222,9 @@ public class RepairService {
         
         ServiceOrder serviceOrder = serviceItem.getServiceOrder();
         entityManager.remove(serviceItem);
-        
-        // Deprecated pattern - manual total recalculation
-        recalculateServiceOrderTotal(serviceOrder);
-        
-        entityManager.flush(); // Deprecated explicit flush
+        if (serviceItem.getTotalPrice() != null) {
+            adjustServiceOrderTotal(serviceOrder, serviceItem.getTotalPrice().negate());
+        }
         
         logger.info("Service item removed: " + serviceItemId);
     }
@@ -199,10 +238,15 @@ public class RepairService {
             throw new IllegalArgumentException("Service order not found");
         }
         
+        boolean wasRevenue = countsAsRevenue(serviceOrder);
+        Date previousCompletion = serviceOrder.getActualCompletion();
+        BigDecimal previousCost = serviceOrder.getActualCost();
+        
         serviceOrder.setStatus(ServiceOrder.ServiceStatus.COMPLETED);
         serviceOrder.setActualCompletion(new Date());
         serviceOrder.setActualCost(finalCost);
         serviceOrder.setMechanicNotes(mechanicNotes);
+        updateRevenueRollup(wasRevenue, previousCompletion, previousCost, serviceOrder);
         
         // Update customer's last visit date
         customerService.updateLastVisitDate(serviceOrder.getCustomer().getCustomerId());
@@ -228,36 +272,45 @@ public class RepairService {
         return query.getResultList();
     }
 
-    // Deprecated helper method with manual calculation
-    private void recalculateServiceOrderTotal(ServiceOrder serviceOrder) {
-        logger.info("Recalculating service order total: " + serviceOrder.getServiceOrderId());
-        
-        // Deprecated raw query for calculation
-        Query query = entityManager.createQuery(
-            "SELECT SUM(si.totalPrice) FROM ServiceItem si WHERE si.serviceOrder.serviceOrderId = :orderId");
-        query.setParameter("orderId", serviceOrder.getServiceOrderId());
-        
-        BigDecimal total = (BigDecimal) query.getSingleResult();
-        serviceOrder.setEstimatedCost(total != null ? total : BigDecimal.ZERO);
-        
-        entityManager.merge(serviceOrder);
+    // Moves the total of a managed order by the price of the items added or removed instead of
+    // summing all of its items again. The change bumps the order's version, so a concurrent
+    // edit of the same order fails with an OptimisticLockException at commit.
+    private void adjustServiceOrderTotal(ServiceOrder serviceOrder, BigDecimal delta) {
+        if (delta == null || delta.signum() == 0) {
+            return;
+        }
+        BigDecimal total = serviceOrder.getEstimatedCost() != null ? serviceOrder.getEstimatedCost() : BigDecimal.ZERO;
+        serviceOrder.setEstimatedCost(total.add(delta));
+    }
+
+    // Moves an order's revenue between months of the rollup when its completion changes
+    private void updateRevenueRollup(boolean wasRevenue, Date previousCompletion, BigDecimal previousCost,
+                                     ServiceOrder serviceOrder) {
+        if (wasRevenue) {
+            revenueRollup.retract(previousCompletion, previousCost);
+        }
+        if (countsAsRevenue(serviceOrder)) {
+            revenueRollup.record(serviceOrder.getActualCompletion(), serviceOrder.getActualCost());
+        }
+    }
+
+    private static boolean countsAsRevenue(ServiceOrder serviceOrder) {
+        return serviceOrder.getStatus() == ServiceOrder.ServiceStatus.COMPLETED
+                && serviceOrder.getActualCompletion() != null;
     }
 
     public BigDecimal calculateMonthlyRevenue(int year, int month) {
         logger.info("Calculating monthly revenue for: " + year + "-" + month);
         
-        // Deprecated string concatenation in query
-        String queryString = "SELECT SUM(so.actualCost) FROM ServiceOrder so " +
-                           "WHERE YEAR(so.actualCompletion) = :year " +
-                           "AND MONTH(so.actualCompletion) = :month " +
-                           "AND so.status = :status";
-        
-        Query query = entityManager.createQuery(queryString);
-        query.setParameter("year", year);
-        query.setParameter("month", month);
-        query.setParameter("status", ServiceOrder.ServiceStatus.COMPLETED);
+        return revenueRollup.getRevenue(YearMonth.of(year, month));
+    }
+
+    /**
+     * Revenue of every month from one month to another inclusive, in month order.
+     */
+    public Map<YearMonth, BigDecimal> calculateRevenueByMonth(YearMonth fromMonth, YearMonth toMonth) {
+        logger.info("Calculating revenue by month from " + fromMonth + " to " + toMonth);
         
-        BigDecimal revenue = (BigDecimal) query.getSingleResult();
-        return revenue != null ? revenue : BigDecimal.ZERO;
+        return revenueRollup.getRevenueByMonth(fromMonth, toMonth);
     }
 }
@@ -0,0 +1,307 @@
+package com.redhat.mta.examples.hotrod.repair.service;
+
+import com.redhat.mta.examples.hotrod.repair.entity.MonthlyRevenue;
+import com.redhat.mta.examples.hotrod.repair.entity.ServiceOrder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.batch.runtime.BatchRuntime;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.SessionContext;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Maintains the {@link MonthlyRevenue} rollup of completed service orders and serves
+ * revenue by month from it.
+ *
+ * {@link RepairService} records each order as it is completed, or retracts it when a
+ * completed order is changed, with an atomic upsert of the month's row. Months read are
+ * cached until a committed change touches them. The rollup is back-filled by the
+ * {@value #BACKFILL_JOB} batch job, which runs on its own when the table is empty at
+ * startup, and checked against the service orders every night.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class RevenueRollupService {
+
+    private static final Logger logger = Logger.getLogger(RevenueRollupService.class.getName());
+
+    public static final String BACKFILL_JOB = "revenue-rollup-backfill";
+
+    private static final String ADD_SQL =
+            "INSERT INTO {h-schema}monthly_revenue (revenue_month, revenue, order_count) VALUES (?1, ?2, ?3) "
+            + "ON CONFLICT (revenue_month) DO UPDATE SET revenue = monthly_revenue.revenue + EXCLUDED.revenue, "
+            + "order_count = monthly_revenue.order_count + EXCLUDED.order_count";
+
+    private static final String SET_SQL =
+            "INSERT INTO {h-schema}monthly_revenue (revenue_month, revenue, order_count) VALUES (?1, ?2, ?3) "
+            + "ON CONFLICT (revenue_month) DO UPDATE SET revenue = EXCLUDED.revenue, order_count = EXCLUDED.order_count";
+
+    private static final String CREATE_SQL =
+            "INSERT INTO {h-schema}monthly_revenue (revenue_month, revenue, order_count) VALUES (?1, 0, 0) "
+            + "ON CONFLICT (revenue_month) DO NOTHING";
+
+    private static final String LOCK_SQL =
+            "SELECT revenue_month FROM {h-schema}monthly_revenue WHERE revenue_month = ?1 FOR UPDATE";
+
+    @PersistenceContext(unitName = "hotrodsPU")
+    private EntityManager entityManager;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionRegistry;
+
+    @Resource
+    private SessionContext context;
+
+    private final Map<YearMonth, BigDecimal> cache = new ConcurrentHashMap<>();
+
+    // bumped whenever a month is evicted, so a read that raced with a commit is not cached
+    private final Map<YearMonth, Long> versions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void startBackfillIfEmpty() {
+        try {
+            Long months = entityManager.createNamedQuery("MonthlyRevenue.count", Long.class).getSingleResult();
+            if (months == 0 && getFirstCompletedMonth() != null) {
+                logger.info("Monthly revenue rollup is empty, starting " + BACKFILL_JOB);
+                BatchRuntime.getJobOperator().start(BACKFILL_JOB, new Properties());
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Unable to check the monthly revenue rollup, run " + BACKFILL_JOB + " to fill it", e);
+        }
+    }
+
+    /**
+     * Adds an order completed at the given time to its month, as part of the caller's transaction.
+     */
+    public void record(Date completedAt, BigDecimal amount) {
+        add(monthOf(completedAt), amount != null ? amount : BigDecimal.ZERO, 1);
+    }
+
+    /**
+     * Takes back an order previously passed to {@link #record}, as part of the caller's transaction.
+     */
+    public void retract(Date completedAt, BigDecimal amount) {
+        add(monthOf(completedAt), amount != null ? amount.negate() : BigDecimal.ZERO, -1);
+    }
+
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public BigDecimal getRevenue(YearMonth month) {
+        return getRevenueByMonth(month, month).get(month);
+    }
+
+    /**
+     * Returns the revenue of every month from one month to another inclusive, in month order,
+     * with zero for months without completed orders. Months not cached are read in one query.
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Map<YearMonth, BigDecimal> getRevenueByMonth(YearMonth from, YearMonth to) {
+        Map<YearMonth, BigDecimal> revenue = new LinkedHashMap<>();
+        YearMonth firstMissing = null;
+        YearMonth lastMissing = null;
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            BigDecimal cached = cache.get(month);
+            revenue.put(month, cached);
+            if (cached == null) {
+                if (firstMissing == null) {
+                    firstMissing = month;
+                }
+                lastMissing = month;
+            }
+        }
+        if (firstMissing == null) {
+            return revenue;
+        }
+
+        Map<YearMonth, Long> versionsBefore = new HashMap<>();
+        for (Map.Entry<YearMonth, BigDecimal> entry : revenue.entrySet()) {
+            if (entry.getValue() == null) {
+                versionsBefore.put(entry.getKey(), versions.getOrDefault(entry.getKey(), 0L));
+            }
+        }
+        Map<YearMonth, BigDecimal> loaded = new HashMap<>();
+        for (MonthlyRevenue row : entityManager.createNamedQuery("MonthlyRevenue.findRange", MonthlyRevenue.class)
+                .setParameter("fromMonth", key(firstMissing))
+                .setParameter("toMonth", key(lastMissing))
+                .getResultList()) {
+            loaded.put(monthOf(row.getRevenueMonth()), row.getRevenue());
+        }
+        for (Map.Entry<YearMonth, BigDecimal> entry : revenue.entrySet()) {
+            if (entry.getValue() == null) {
+                BigDecimal value = loaded.containsKey(entry.getKey()) ? loaded.get(entry.getKey()) : BigDecimal.ZERO;
+                entry.setValue(value);
+                // checked and stored under the month's lock in the map; an eviction bumps the
+                // version before it removes the month, so it either stops the store here or
+                // removes what was stored
+                long versionBefore = versionsBefore.get(entry.getKey());
+                cache.compute(entry.getKey(), (month, cached) ->
+                        versions.getOrDefault(month, 0L) == versionBefore ? value : cached);
+            }
+        }
+        return revenue;
+    }
+
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public YearMonth getFirstCompletedMonth() {
+        Date first = entityManager.createNamedQuery("ServiceOrder.findFirstCompletion", Date.class)
+                .setParameter("status", ServiceOrder.ServiceStatus.COMPLETED)
+                .getSingleResult();
+        return first != null ? monthOf(first) : null;
+    }
+
+    /**
+     * Recomputes one month from the service orders in a transaction of its own. The month's
+     * row is locked before the orders are summed, so an order completed meanwhile either is
+     * in the sum or waits to add itself until the new totals are committed.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void rebuildMonth(YearMonth month) {
+        lock(month);
+        Object[] totals = completedTotals(month);
+        set(month, (BigDecimal) totals[0], (Long) totals[1]);
+    }
+
+    /**
+     * Compares every month of the rollup with the service orders and corrects the months that
+     * drifted, for instance through changes made directly in the database. Each month that
+     * drifted is rebuilt by {@link #rebuildMonth} in a transaction of its own, so its row is
+     * only locked while that month is corrected.
+     *
+     * @return the number of months corrected
+     */
+    public int reconcile() {
+        Map<YearMonth, MonthlyRevenue> rollup = new HashMap<>();
+        for (MonthlyRevenue row : entityManager.createNamedQuery("MonthlyRevenue.findRange", MonthlyRevenue.class)
+                .setParameter("fromMonth", 0)
+                .setParameter("toMonth", Integer.MAX_VALUE)
+                .getResultList()) {
+            rollup.put(monthOf(row.getRevenueMonth()), row);
+        }
+
+        TreeSet<YearMonth> months = new TreeSet<>(rollup.keySet());
+        YearMonth first = getFirstCompletedMonth();
+        if (first != null) {
+            for (YearMonth month = first; !month.isAfter(YearMonth.now()); month = month.plusMonths(1)) {
+                months.add(month);
+            }
+        }
+
+        RevenueRollupService self = context.getBusinessObject(RevenueRollupService.class);
+        int corrected = 0;
+        for (YearMonth month : months) {
+            Object[] totals = completedTotals(month);
+            BigDecimal revenue = (BigDecimal) totals[0];
+            Long orders = (Long) totals[1];
+            MonthlyRevenue row = rollup.get(month);
+            boolean matches = row != null
+                    ? row.getRevenue().compareTo(revenue) == 0 && row.getOrderCount().equals(orders)
+                    : orders == 0;
+            if (!matches) {
+                logger.warning("Monthly revenue rollup for " + month + " was " + row + ", expected revenue="
+                        + revenue + ", orderCount=" + orders + ", rebuilding it");
+                self.rebuildMonth(month);
+                corrected++;
+            }
+        }
+        logger.info("Reconciled " + months.size() + " months of revenue, corrected " + corrected);
+        return corrected;
+    }
+
+    @Schedule(hour = "3", minute = "15", persistent = false)
+    void reconcileNightly() {
+        reconcile();
+    }
+
+    // revenue and number of the orders completed in the month, by a range on actual_completion
+    private Object[] completedTotals(YearMonth month) {
+        Object[] totals = entityManager.createNamedQuery("ServiceOrder.completedTotalsBetween", Object[].class)
+                .setParameter("status", ServiceOrder.ServiceStatus.COMPLETED)
+                .setParameter("start", startOf(month))
+                .setParameter("end", startOf(month.plusMonths(1)))
+                .getSingleResult();
+        if (totals[0] == null) {
+            totals[0] = BigDecimal.ZERO;
+        }
+        return totals;
+    }
+
+    // creates the month's row if missing and holds its lock until the transaction ends
+    private void lock(YearMonth month) {
+        entityManager.createNativeQuery(CREATE_SQL)
+                .setParameter(1, key(month))
+                .executeUpdate();
+        entityManager.createNativeQuery(LOCK_SQL)
+                .setParameter(1, key(month))
+                .getSingleResult();
+    }
+
+    private void add(YearMonth month, BigDecimal amount, long orders) {
+        entityManager.createNativeQuery(ADD_SQL)
+                .setParameter(1, key(month))
+                .setParameter(2, amount)
+                .setParameter(3, orders)
+                .executeUpdate();
+        evictAfterCommit(month);
+    }
+
+    private void set(YearMonth month, BigDecimal revenue, long orders) {
+        entityManager.createNativeQuery(SET_SQL)
+                .setParameter(1, key(month))
+                .setParameter(2, revenue)
+                .setParameter(3, orders)
+                .executeUpdate();
+        evictAfterCommit(month);
+    }
+
+    private void evictAfterCommit(final YearMonth month) {
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                versions.merge(month, 1L, Long::sum);
+                cache.remove(month);
+            }
+        });
+    }
+
+    private static int key(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+
+    private static YearMonth monthOf(int key) {
+        return YearMonth.of(key / 100, key % 100);
+    }
+
+    private static YearMonth monthOf(Date date) {
+        return YearMonth.from(date.toInstant().atZone(ZoneId.systemDefault()));
+    }
+
+    private static Date startOf(YearMonth month) {
+        return Date.from(month.atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,14 @@
+package com.redhat.mta.examples.hotrod.repair.service;
+
+/**
+ * Associations of a {@link com.redhat.mta.examples.hotrod.repair.entity.ServiceOrder} to
+ * load together with it. The customer and vehicle are always joined in the same statement.
+ */
+public enum ServiceOrderFetchPlan {
+
+    /** The order with its customer and vehicle. */
+    BASIC,
+
+    /** The order with its customer, vehicle and service items. */
+    ITEMS
+}
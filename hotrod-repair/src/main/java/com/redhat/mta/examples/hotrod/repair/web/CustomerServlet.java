@@ -4,6 +4,8 @@ import com.redhat.mta.examples.hotrod.repair.entity.Customer;
 import com.redhat.mta.examples.hotrod.repair.service.CustomerServiceLocal;
 
 import javax.ejb.EJB;
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -12,6 +14,7 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -30,6 +33,15 @@ public class CustomerServlet extends HttpServlet {
     private static final Logger logger = Logger.getLogger(CustomerServlet.class.getName());
     private static final long serialVersionUID = 1L;
 
+    // Customers fetched per round trip while streaming the HTML list
+    private static final int LIST_PAGE_SIZE = 500;
+
+    private static final int DEFAULT_JSON_PAGE_SIZE = 50;
+    private static final int MAX_JSON_PAGE_SIZE = 500;
+
+    // Customers shown for a name search; broader terms have to be narrowed down
+    private static final int SEARCH_PAGE_SIZE = 100;
+
     @EJB
     private CustomerServiceLocal customerService;
 
@@ -89,7 +101,10 @@ public class CustomerServlet extends HttpServlet {
     private void handleListCustomers(HttpServletRequest request, HttpServletResponse response) 
             throws IOException {
         
-        List<Customer> customers = customerService.findAllCustomers();
+        if ("json".equals(request.getParameter("format"))) {
+            handleListCustomersJson(request, response);
+            return;
+        }
         
         // Deprecated HTML generation in servlet
         PrintWriter out = response.getWriter();
@@ -126,23 +141,18 @@ public class CustomerServlet extends HttpServlet {
         out.println("<th>ID</th><th>Name</th><th>Email</th><th>Phone</th><th>City</th><th>Status</th><th>Actions</th>");
         out.println("</tr>");
         
-        for (Customer customer : customers) {
-            out.println("<tr>");
-            out.println("<td>" + customer.getCustomerId() + "</td>");
-            out.println("<td>" + customer.getFirstName() + " " + customer.getLastName() + "</td>");
-            out.println("<td>" + customer.getEmail() + "</td>");
-            out.println("<td>" + customer.getPhoneNumber() + "</td>");
-            out.println("<td>" + (customer.getCity() != null ? customer.getCity() : "") + "</td>");
-            out.println("<td>" + (customer.getIsActive() ? "Active" : "Inactive") + "</td>");
-            out.println("<td>");
-            out.println("<a href='customers/" + customer.getCustomerId() + "'>View</a> | ");
-            out.println("<a href='customer-form.jsp?id=" + customer.getCustomerId() + "'>Edit</a>");
-            if (customer.getIsActive()) {
-                out.println(" | <a href='javascript:deactivateCustomer(" + customer.getCustomerId() + ")'>Deactivate</a>");
+        // Rows are fetched a page at a time and flushed after each page, so the response goes
+        // out chunked while later pages load and only one page of customers is held at once
+        Long lastCustomerId = null;
+        List<Customer> page;
+        do {
+            page = customerService.findCustomersAfter(lastCustomerId, LIST_PAGE_SIZE);
+            for (Customer customer : page) {
+                writeCustomerRow(out, customer);
+                lastCustomerId = customer.getCustomerId();
             }
-            out.println("</td>");
-            out.println("</tr>");
-        }
+            out.flush();
+        } while (page.size() == LIST_PAGE_SIZE);
         
         out.println("</table>");
         
@@ -173,6 +183,79 @@ public class CustomerServlet extends HttpServlet {
         out.println("</html>");
     }
 
+    private void writeCustomerRow(PrintWriter out, Customer customer) {
+        out.println("<tr>");
+        out.println("<td>" + customer.getCustomerId() + "</td>");
+        out.println("<td>" + customer.getFirstName() + " " + customer.getLastName() + "</td>");
+        out.println("<td>" + customer.getEmail() + "</td>");
+        out.println("<td>" + customer.getPhoneNumber() + "</td>");
+        out.println("<td>" + (customer.getCity() != null ? customer.getCity() : "") + "</td>");
+        out.println("<td>" + (customer.getIsActive() ? "Active" : "Inactive") + "</td>");
+        out.println("<td>");
+        out.println("<a href='customers/" + customer.getCustomerId() + "'>View</a> | ");
+        out.println("<a href='customer-form.jsp?id=" + customer.getCustomerId() + "'>Edit</a>");
+        if (customer.getIsActive()) {
+            out.println(" | <a href='javascript:deactivateCustomer(" + customer.getCustomerId() + ")'>Deactivate</a>");
+        }
+        out.println("</td>");
+        out.println("</tr>");
+    }
+
+    /**
+     * Writes one page of customers as JSON for the front end. The page starts after the
+     * customer ID given as cursor and nextCursor is null on the last page.
+     */
+    private void handleListCustomersJson(HttpServletRequest request, HttpServletResponse response) 
+            throws IOException {
+        
+        Long cursor;
+        int limit;
+        try {
+            String cursorParam = request.getParameter("cursor");
+            String limitParam = request.getParameter("limit");
+            cursor = cursorParam != null && !cursorParam.isEmpty() ? Long.valueOf(cursorParam) : null;
+            limit = limitParam != null && !limitParam.isEmpty() ? Integer.parseInt(limitParam) : DEFAULT_JSON_PAGE_SIZE;
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor or limit");
+            return;
+        }
+        limit = Math.max(1, Math.min(limit, MAX_JSON_PAGE_SIZE));
+        
+        List<Customer> page = customerService.findCustomersAfter(cursor, limit);
+        
+        response.setContentType("application/json;charset=UTF-8");
+        JsonGenerator json = Json.createGenerator(response.getWriter());
+        json.writeStartObject();
+        json.writeStartArray("customers");
+        for (Customer customer : page) {
+            json.writeStartObject();
+            json.write("customerId", customer.getCustomerId());
+            writeJsonString(json, "firstName", customer.getFirstName());
+            writeJsonString(json, "lastName", customer.getLastName());
+            writeJsonString(json, "email", customer.getEmail());
+            writeJsonString(json, "phoneNumber", customer.getPhoneNumber());
+            writeJsonString(json, "city", customer.getCity());
+            json.write("active", customer.getIsActive());
+            json.writeEnd();
+        }
+        json.writeEnd();
+        if (page.size() == limit) {
+            json.write("nextCursor", page.get(page.size() - 1).getCustomerId());
+        } else {
+            json.writeNull("nextCursor");
+        }
+        json.writeEnd();
+        json.flush();
+    }
+
+    private static void writeJsonString(JsonGenerator json, String name, String value) {
+        if (value != null) {
+            json.write(name, value);
+        } else {
+            json.writeNull(name);
+        }
+    }
+
     private void handleGetCustomer(HttpServletRequest request, HttpServletResponse response, Long customerId) 
             throws IOException {
         
@@ -225,7 +308,12 @@ public class CustomerServlet extends HttpServlet {
             return;
         }
         
-        List<Customer> customers = customerService.searchCustomersByName(searchTerm.trim());
+        // one more than shown, to tell the user when the term matched more customers
+        List<Customer> customers = customerService.searchCustomersByName(searchTerm.trim(), SEARCH_PAGE_SIZE + 1);
+        boolean moreResults = customers.size() > SEARCH_PAGE_SIZE;
+        if (moreResults) {
+            customers = new ArrayList<>(customers.subList(0, SEARCH_PAGE_SIZE));
+        }
         
         // Store search results in session - deprecated pattern
         HttpSession session = request.getSession();
@@ -235,6 +323,7 @@ public class CustomerServlet extends HttpServlet {
         // Forward to JSP - deprecated pattern, should use modern templating
         request.setAttribute("customers", customers);
         request.setAttribute("searchTerm", searchTerm);
+        request.setAttribute("moreResults", moreResults);
         try {
             request.getRequestDispatcher("/customer-search-results.jsp").forward(request, response);
         } catch (ServletException e) {
@@ -0,0 +1,227 @@
+package com.redhat.mta.examples.hotrod.repair.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.redhat.mta.examples.hotrod.repair.entity.Customer;
+import com.redhat.mta.examples.hotrod.repair.entity.MonthlyRevenue;
+import com.redhat.mta.examples.hotrod.repair.entity.ServiceItem;
+import com.redhat.mta.examples.hotrod.repair.entity.ServiceOrder;
+import com.redhat.mta.examples.hotrod.repair.entity.Vehicle;
+
+/**
+ * Counts the statements each fetch plan runs, so a change to a mapping or a named query that
+ * brings back lazy loading per row fails here. Three customers each have two vehicles, and two
+ * service orders with two items each, all completed.
+ */
+public class FetchPlanTest {
+
+    private static final int CUSTOMERS = 3;
+
+    private static SessionFactory factory;
+
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+
+    private CustomerService customerService;
+
+    private RepairService repairService;
+
+    private Long customerId;
+
+    private Long serviceOrderId;
+
+    @BeforeClass
+    public static void createFactory() {
+        // the hotrodsPU mappings on an in-memory database, without the container's data source
+        factory = new Configuration()
+                .addAnnotatedClass(Customer.class)
+                .addAnnotatedClass(Vehicle.class)
+                .addAnnotatedClass(ServiceOrder.class)
+                .addAnnotatedClass(ServiceItem.class)
+                .addAnnotatedClass(MonthlyRevenue.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:hotrods;MODE=LEGACY;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR,VALUE")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .setProperty("hibernate.generate_statistics", "true")
+                .setProperty("javax.persistence.validation.mode", "none")
+                .buildSessionFactory();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        entityManager = factory.createEntityManager();
+        entityManager.getTransaction().begin();
+        for (int c = 0; c < CUSTOMERS; c++) {
+            seedCustomer(c);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        customerService = new CustomerService();
+        inject(customerService, "entityManager", entityManager);
+        repairService = new RepairService();
+        inject(repairService, "entityManager", entityManager);
+
+        statistics = factory.getStatistics();
+        statistics.clear();
+    }
+
+    @After
+    public void tearDown() {
+        entityManager.getTransaction().rollback();
+        entityManager.close();
+    }
+
+    @Test
+    public void customerByIdBasic() {
+        Customer customer = customerService.findCustomerById(customerId, CustomerFetchPlan.BASIC);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertTrue(customer != null);
+    }
+
+    @Test
+    public void customerByIdWithVehicles() {
+        Customer customer = customerService.findCustomerById(customerId, CustomerFetchPlan.VEHICLES);
+        assertEquals(2, customer.getVehicles().size());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void customerByIdWithServiceOrders() {
+        Customer customer = customerService.findCustomerById(customerId, CustomerFetchPlan.SERVICE_ORDERS);
+        assertEquals(2, customer.getServiceOrders().size());
+        for (ServiceOrder order : customer.getServiceOrders()) {
+            order.getVehicle().getMake();
+        }
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void customerByIdWithVehiclesAndServiceOrders() {
+        Customer customer = customerService.findCustomerById(customerId, CustomerFetchPlan.VEHICLES_AND_SERVICE_ORDERS);
+        assertEquals(2, customer.getVehicles().size());
+        assertEquals(2, customer.getServiceOrders().size());
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void allCustomersDoNotLoadPerCustomer() {
+        List<Customer> customers = customerService.findAllCustomers(CustomerFetchPlan.VEHICLES_AND_SERVICE_ORDERS);
+        assertEquals(CUSTOMERS, customers.size());
+        for (Customer customer : customers) {
+            assertEquals(2, customer.getVehicles().size());
+            assertEquals(2, customer.getServiceOrders().size());
+        }
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void serviceOrderByIdBasic() {
+        ServiceOrder order = repairService.findServiceOrderById(serviceOrderId, ServiceOrderFetchPlan.BASIC);
+        order.getCustomer().getLastName();
+        order.getVehicle().getMake();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void serviceOrderByIdWithItems() {
+        ServiceOrder order = repairService.findServiceOrderById(serviceOrderId, ServiceOrderFetchPlan.ITEMS);
+        assertEquals(2, order.getServiceItems().size());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void serviceOrdersByStatusDoNotLoadPerOrder() {
+        List<ServiceOrder> orders = repairService.findServiceOrdersByStatus(ServiceOrder.ServiceStatus.COMPLETED,
+                ServiceOrderFetchPlan.ITEMS);
+        assertEquals(CUSTOMERS * 2, orders.size());
+        for (ServiceOrder order : orders) {
+            assertEquals(2, order.getServiceItems().size());
+        }
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    private void seedCustomer(int c) {
+        Customer customer = new Customer();
+        customer.setFirstName("First" + c);
+        customer.setLastName("Last" + c);
+        customer.setEmail("customer" + c + "@example.com");
+        customer.setPhoneNumber("555-000" + c);
+        customer.setRegistrationDate(new Date());
+        customer.setIsActive(Boolean.TRUE);
+        entityManager.persist(customer);
+        customerId = customer.getCustomerId();
+
+        for (int v = 0; v < 2; v++) {
+            Vehicle vehicle = new Vehicle();
+            vehicle.setVinNumber("VIN" + c + "-" + v);
+            vehicle.setMake("Ford");
+            vehicle.setModel("Model " + v);
+            vehicle.setYear(1932);
+            vehicle.setRegistrationDate(new Date());
+            vehicle.setIsActive(Boolean.TRUE);
+            vehicle.setCustomer(customer);
+            entityManager.persist(vehicle);
+
+            ServiceOrder order = new ServiceOrder();
+            order.setOrderNumber("SO-" + c + "-" + v);
+            order.setServiceDate(new Date());
+            order.setStatus(ServiceOrder.ServiceStatus.COMPLETED);
+            order.setPriority(ServiceOrder.ServicePriority.NORMAL);
+            order.setServiceDescription("Tune-up");
+            order.setIsWarrantyWork(Boolean.FALSE);
+            order.setCustomer(customer);
+            order.setVehicle(vehicle);
+            entityManager.persist(order);
+            serviceOrderId = order.getServiceOrderId();
+
+            for (int i = 0; i < 2; i++) {
+                ServiceItem item = new ServiceItem();
+                item.setItemDescription("Item " + i);
+                item.setItemType(ServiceItem.ItemType.PART);
+                item.setQuantity(1);
+                item.setUnitPrice(BigDecimal.TEN);
+                item.setServiceOrder(order);
+                entityManager.persist(item);
+            }
+        }
+    }
+
+    private static void inject(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,95 @@
+package com.redhat.mta.examples.hotrod.repair.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class NameIndexTest {
+
+    private NameIndex index;
+
+    @Before
+    public void setUp() {
+        index = new NameIndex();
+        index.put(1L, "John", "Smith");
+        index.put(2L, "Jane", "Smithers");
+        index.put(3L, "Smitty", "Adams");
+        index.put(4L, "Anna", "Johnson");
+        index.put(5L, "Bob", "Brown");
+    }
+
+    @Test
+    public void matchesTermAnywhereInEitherName() {
+        assertEquals(Arrays.asList(3L, 1L, 2L), index.search("mit", 10));
+        assertEquals(Arrays.asList(4L, 1L), index.search("john", 10));
+    }
+
+    @Test
+    public void ignoresCaseAndSurroundingBlanks() {
+        assertEquals(Arrays.asList(3L, 1L, 2L), index.search("  SMIT ", 10));
+    }
+
+    @Test
+    public void ranksByLastNameThenFirstNameThenId() {
+        index.put(6L, "Adam", "Smith");
+        index.put(7L, "John", "Smith");
+
+        assertEquals(Arrays.asList(3L, 6L, 1L, 7L, 2L), index.search("smit", 10));
+    }
+
+    @Test
+    public void keepsOnlyTheBestRankedResults() {
+        assertEquals(Arrays.asList(3L, 1L), index.search("smit", 2));
+    }
+
+    @Test
+    public void matchesShortTermsWithoutTrigrams() {
+        assertEquals(Arrays.asList(5L, 4L, 1L, 2L), index.search("n", 10));
+        assertEquals(Arrays.asList(5L), index.search("br", 10));
+    }
+
+    @Test
+    public void findsNothingForUnknownOrEmptyTerms() {
+        assertTrue(index.search("xyz", 10).isEmpty());
+        assertTrue(index.search("smithx", 10).isEmpty());
+        assertTrue(index.search("", 10).isEmpty());
+        assertTrue(index.search(null, 10).isEmpty());
+        assertTrue(index.search("smit", 0).isEmpty());
+    }
+
+    @Test
+    public void renameReplacesTheOldName() {
+        index.put(1L, "John", "Doe");
+
+        assertEquals(Arrays.asList(3L, 2L), index.search("smit", 10));
+        assertEquals(Arrays.asList(1L), index.search("doe", 10));
+        assertEquals(Arrays.asList(1L, 4L), index.search("john", 10));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    public void removeDropsTheCustomer() {
+        index.remove(2L);
+        index.remove(42L);
+
+        assertEquals(Arrays.asList(3L, 1L), index.search("smit", 10));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void rankingOrdersRowsLikeTheIndex() {
+        // the database fallback hands over rows in no particular order and case
+        NameIndex.Ranking ranking = new NameIndex.Ranking("SMIT", 2);
+        ranking.offer(2L, "Jane", "Smithers");
+        ranking.offer(5L, "Bob", "Brown");
+        ranking.offer(1L, "John", "SMITH");
+        ranking.offer(3L, "Smitty", "adams");
+
+        assertEquals(index.search("smit", 2), ranking.customerIds());
+        assertTrue(new NameIndex.Ranking("smit", 0).customerIds().isEmpty());
+    }
+}
@@ -0,0 +1,215 @@
+package com.redhat.mta.examples.hotrod.repair.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.redhat.mta.examples.hotrod.repair.entity.Customer;
+import com.redhat.mta.examples.hotrod.repair.entity.MonthlyRevenue;
+import com.redhat.mta.examples.hotrod.repair.entity.ServiceItem;
+import com.redhat.mta.examples.hotrod.repair.entity.ServiceOrder;
+import com.redhat.mta.examples.hotrod.repair.entity.Vehicle;
+
+/**
+ * Adding and removing items moves the order's estimated cost by the items' price instead of
+ * summing the items again, and two edits of the same order cannot both commit. The order
+ * starts at an estimate of 100.00 with no items, so a recount would show.
+ */
+public class RepairServiceTest {
+
+    private static SessionFactory factory;
+
+    private Long serviceOrderId;
+
+    @BeforeClass
+    public static void createFactory() {
+        // the hotrodsPU mappings on an in-memory database, without the container's data source
+        factory = new Configuration()
+                .addAnnotatedClass(Customer.class)
+                .addAnnotatedClass(Vehicle.class)
+                .addAnnotatedClass(ServiceOrder.class)
+                .addAnnotatedClass(ServiceItem.class)
+                .addAnnotatedClass(MonthlyRevenue.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:repairs;MODE=LEGACY;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR,VALUE")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .setProperty("javax.persistence.validation.mode", "none")
+                .buildSessionFactory();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+
+    @Before
+    public void setUp() {
+        EntityManager entityManager = factory.createEntityManager();
+        entityManager.getTransaction().begin();
+        Customer customer = new Customer();
+        customer.setFirstName("Ada");
+        customer.setLastName("Racer");
+        customer.setEmail("ada@example.com");
+        customer.setPhoneNumber("555-0100");
+        customer.setRegistrationDate(new Date());
+        customer.setIsActive(Boolean.TRUE);
+        entityManager.persist(customer);
+
+        Vehicle vehicle = new Vehicle();
+        vehicle.setVinNumber("VIN-1");
+        vehicle.setMake("Ford");
+        vehicle.setModel("Model B");
+        vehicle.setYear(1932);
+        vehicle.setRegistrationDate(new Date());
+        vehicle.setIsActive(Boolean.TRUE);
+        vehicle.setCustomer(customer);
+        entityManager.persist(vehicle);
+
+        ServiceOrder order = new ServiceOrder();
+        order.setOrderNumber("SO-1");
+        order.setServiceDate(new Date());
+        order.setStatus(ServiceOrder.ServiceStatus.IN_PROGRESS);
+        order.setPriority(ServiceOrder.ServicePriority.NORMAL);
+        order.setServiceDescription("Rebuild");
+        order.setIsWarrantyWork(Boolean.FALSE);
+        order.setEstimatedCost(new BigDecimal("100.00"));
+        order.setCustomer(customer);
+        order.setVehicle(vehicle);
+        entityManager.persist(order);
+        entityManager.getTransaction().commit();
+        entityManager.close();
+        serviceOrderId = order.getServiceOrderId();
+    }
+
+    @After
+    public void tearDown() {
+        EntityManager entityManager = factory.createEntityManager();
+        entityManager.getTransaction().begin();
+        for (String entity : Arrays.asList("ServiceItem", "ServiceOrder", "Vehicle", "Customer")) {
+            entityManager.createQuery("DELETE FROM " + entity).executeUpdate();
+        }
+        entityManager.getTransaction().commit();
+        entityManager.close();
+    }
+
+    @Test
+    public void itemsMoveTheEstimatedCostByTheirPrice() throws Exception {
+        EntityManager entityManager = factory.createEntityManager();
+        RepairService repairService = repairService(entityManager);
+
+        entityManager.getTransaction().begin();
+        List<ServiceItem> added = repairService.addServiceItems(serviceOrderId,
+                Arrays.asList(item("Carburetor", 2, "10.00"), item("Gasket", 1, "5.50")));
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+        assertAmount("125.50", entityManager.find(ServiceOrder.class, serviceOrderId).getEstimatedCost());
+
+        entityManager.getTransaction().begin();
+        repairService.removeServiceItem(added.get(0).getServiceItemId());
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+        assertAmount("105.50", entityManager.find(ServiceOrder.class, serviceOrderId).getEstimatedCost());
+
+        entityManager.getTransaction().begin();
+        repairService.addServiceItem(serviceOrderId, item("Spark plug", 4, "2.25"));
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+        assertAmount("114.50", entityManager.find(ServiceOrder.class, serviceOrderId).getEstimatedCost());
+        entityManager.close();
+    }
+
+    @Test
+    public void secondOfTwoRacingEditsFails() throws Exception {
+        EntityManager first = factory.createEntityManager();
+        EntityManager second = factory.createEntityManager();
+        first.getTransaction().begin();
+        second.getTransaction().begin();
+
+        // both read the order before either commits
+        repairService(first).addServiceItems(serviceOrderId, Collections.singletonList(item("Radiator", 1, "80.00")));
+        repairService(second).addServiceItems(serviceOrderId, Collections.singletonList(item("Hose", 1, "7.00")));
+
+        first.getTransaction().commit();
+        try {
+            second.getTransaction().commit();
+            fail("expected the second edit to fail");
+        } catch (RuntimeException e) {
+            assertCausedBy(OptimisticLockException.class, e);
+        }
+        first.close();
+        second.close();
+
+        EntityManager entityManager = factory.createEntityManager();
+        assertAmount("180.00", entityManager.find(ServiceOrder.class, serviceOrderId).getEstimatedCost());
+        entityManager.close();
+    }
+
+    @Test(expected = OptimisticLockException.class)
+    public void updateWithStaleVersionFails() throws Exception {
+        EntityManager entityManager = factory.createEntityManager();
+        RepairService repairService = repairService(entityManager);
+        ServiceOrder edited = entityManager.find(ServiceOrder.class, serviceOrderId);
+        entityManager.detach(edited);
+
+        entityManager.getTransaction().begin();
+        repairService.addServiceItem(serviceOrderId, item("Fan belt", 1, "12.00"));
+        entityManager.getTransaction().commit();
+
+        entityManager.getTransaction().begin();
+        try {
+            edited.setServiceDescription("Rebuild and repaint");
+            repairService.updateServiceOrder(edited);
+        } finally {
+            entityManager.getTransaction().rollback();
+            entityManager.close();
+        }
+    }
+
+    private static RepairService repairService(EntityManager entityManager) throws Exception {
+        RepairService repairService = new RepairService();
+        Field field = RepairService.class.getDeclaredField("entityManager");
+        field.setAccessible(true);
+        field.set(repairService, entityManager);
+        return repairService;
+    }
+
+    private static ServiceItem item(String description, int quantity, String unitPrice) {
+        ServiceItem item = new ServiceItem();
+        item.setItemDescription(description);
+        item.setItemType(ServiceItem.ItemType.PART);
+        item.setQuantity(quantity);
+        item.setUnitPrice(new BigDecimal(unitPrice));
+        return item;
+    }
+
+    private static void assertAmount(String expected, BigDecimal actual) {
+        assertEquals(expected + " != " + actual, 0, new BigDecimal(expected).compareTo(actual));
+    }
+
+    private static void assertCausedBy(Class<? extends Throwable> type, Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return;
+            }
+        }
+        fail("expected " + type.getSimpleName() + " but got " + e);
+    }
+}
@@ -0,0 +1,310 @@
+package com.redhat.mta.examples.hotrod.repair.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import javax.ejb.SessionContext;
+import javax.persistence.EntityManager;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.redhat.mta.examples.hotrod.repair.entity.Customer;
+import com.redhat.mta.examples.hotrod.repair.entity.MonthlyRevenue;
+import com.redhat.mta.examples.hotrod.repair.entity.ServiceItem;
+import com.redhat.mta.examples.hotrod.repair.entity.ServiceOrder;
+import com.redhat.mta.examples.hotrod.repair.entity.Vehicle;
+
+/**
+ * Keeps the monthly rollup in step with completed orders as they are edited, and corrects
+ * it from the orders. The rollup's PostgreSQL upserts are rewritten to H2 {@code MERGE}
+ * statements on the way to the in-memory database; everything else runs as written. Cached
+ * months are evicted when the test commits, as the container does after completion.
+ */
+public class RevenueRollupServiceTest {
+
+    private static final YearMonth JANUARY = YearMonth.of(2024, 1);
+    private static final YearMonth FEBRUARY = YearMonth.of(2024, 2);
+    private static final YearMonth MARCH = YearMonth.of(2024, 3);
+
+    private static SessionFactory factory;
+
+    private final List<Synchronization> synchronizations = new ArrayList<>();
+
+    private EntityManager entityManager;
+
+    private RevenueRollupService rollup;
+
+    private RepairService repairService;
+
+    private Customer customer;
+
+    private Vehicle vehicle;
+
+    private int orders;
+
+    @BeforeClass
+    public static void createFactory() {
+        // the hotrodsPU mappings on an in-memory database, without the container's data source
+        factory = new Configuration()
+                .addAnnotatedClass(Customer.class)
+                .addAnnotatedClass(Vehicle.class)
+                .addAnnotatedClass(ServiceOrder.class)
+                .addAnnotatedClass(ServiceItem.class)
+                .addAnnotatedClass(MonthlyRevenue.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:rollup;MODE=LEGACY;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR,VALUE")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .setProperty("hibernate.session_factory.statement_inspector", UpsertToMerge.class.getName())
+                .setProperty("javax.persistence.validation.mode", "none")
+                .buildSessionFactory();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        entityManager = factory.createEntityManager();
+
+        rollup = new RevenueRollupService();
+        inject(rollup, "entityManager", entityManager);
+        inject(rollup, "transactionRegistry", transactionRegistry());
+        inject(rollup, "context", Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {SessionContext.class},
+                (proxy, method, args) -> {
+                    if ("getBusinessObject".equals(method.getName())) {
+                        return rollup;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }));
+
+        CustomerService customerService = new CustomerService();
+        inject(customerService, "entityManager", entityManager);
+        repairService = new RepairService();
+        inject(repairService, "entityManager", entityManager);
+        inject(repairService, "customerService", customerService);
+        inject(repairService, "revenueRollup", rollup);
+
+        inTransaction(() -> {
+            customer = new Customer();
+            customer.setFirstName("Ada");
+            customer.setLastName("Racer");
+            customer.setEmail("ada@example.com");
+            customer.setPhoneNumber("555-0100");
+            customer.setRegistrationDate(new Date());
+            customer.setIsActive(Boolean.TRUE);
+            entityManager.persist(customer);
+
+            vehicle = new Vehicle();
+            vehicle.setVinNumber("VIN-1");
+            vehicle.setMake("Ford");
+            vehicle.setModel("Model B");
+            vehicle.setYear(1932);
+            vehicle.setRegistrationDate(new Date());
+            vehicle.setIsActive(Boolean.TRUE);
+            vehicle.setCustomer(customer);
+            entityManager.persist(vehicle);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        inTransaction(() -> {
+            for (String entity : Arrays.asList("MonthlyRevenue", "ServiceItem", "ServiceOrder", "Vehicle", "Customer")) {
+                entityManager.createQuery("DELETE FROM " + entity).executeUpdate();
+            }
+        });
+        entityManager.close();
+    }
+
+    @Test
+    public void editingACompletedOrderMovesItsRevenue() {
+        Long orderId = seedOrder(ServiceOrder.ServiceStatus.IN_PROGRESS, null, null);
+        YearMonth now = YearMonth.now();
+
+        inTransaction(() -> repairService.completeServiceOrder(orderId, new BigDecimal("250.00"), "Done"));
+        assertAmount("250.00", rollup.getRevenue(now));
+        assertRow(now, "250.00", 1);
+
+        // moved to another month at a different price
+        ServiceOrder edited = detached(orderId);
+        edited.setActualCompletion(middleOf(JANUARY));
+        edited.setActualCost(new BigDecimal("300.00"));
+        inTransaction(() -> repairService.updateServiceOrder(edited));
+        assertAmount("0", rollup.getRevenue(now));
+        assertAmount("300.00", rollup.getRevenue(JANUARY));
+        assertRow(now, "0", 0);
+        assertRow(JANUARY, "300.00", 1);
+
+        // reopened, so no longer revenue
+        ServiceOrder reopened = detached(orderId);
+        reopened.setStatus(ServiceOrder.ServiceStatus.IN_PROGRESS);
+        inTransaction(() -> repairService.updateServiceOrder(reopened));
+        assertAmount("0", rollup.getRevenue(JANUARY));
+        assertRow(JANUARY, "0", 0);
+    }
+
+    @Test
+    public void reconcileRebuildsMonthsThatDrifted() {
+        seedOrder(ServiceOrder.ServiceStatus.COMPLETED, middleOf(JANUARY), "100.00");
+        seedOrder(ServiceOrder.ServiceStatus.COMPLETED, middleOf(JANUARY), "20.00");
+        seedOrder(ServiceOrder.ServiceStatus.COMPLETED, middleOf(MARCH), "50.00");
+
+        // nothing was recorded, so the months with orders are missing
+        int[] corrected = new int[1];
+        inTransaction(() -> corrected[0] = rollup.reconcile());
+        assertEquals(2, corrected[0]);
+        assertRow(JANUARY, "120.00", 2);
+        assertRow(MARCH, "50.00", 1);
+
+        Map<YearMonth, BigDecimal> revenue = rollup.getRevenueByMonth(JANUARY, MARCH);
+        assertAmount("120.00", revenue.get(JANUARY));
+        assertAmount("0", revenue.get(FEBRUARY));
+        assertAmount("50.00", revenue.get(MARCH));
+
+        // an order completed behind the rollup's back, while March is cached
+        seedOrder(ServiceOrder.ServiceStatus.COMPLETED, middleOf(MARCH), "30.00");
+        assertAmount("50.00", rollup.getRevenue(MARCH));
+
+        inTransaction(() -> corrected[0] = rollup.reconcile());
+        assertEquals(1, corrected[0]);
+        assertRow(MARCH, "80.00", 2);
+        assertAmount("80.00", rollup.getRevenue(MARCH));
+
+        inTransaction(() -> corrected[0] = rollup.reconcile());
+        assertEquals(0, corrected[0]);
+    }
+
+    @Test
+    public void rebuildMonthRecomputesTheRowFromTheOrders() {
+        seedOrder(ServiceOrder.ServiceStatus.COMPLETED, middleOf(JANUARY), "100.00");
+        seedOrder(ServiceOrder.ServiceStatus.CANCELLED, middleOf(JANUARY), "40.00");
+        inTransaction(() -> entityManager.persist(new MonthlyRevenue(202401, new BigDecimal("1.00"), 9L)));
+
+        inTransaction(() -> rollup.rebuildMonth(JANUARY));
+        assertRow(JANUARY, "100.00", 1);
+
+        // a month without a row gets one
+        inTransaction(() -> rollup.rebuildMonth(FEBRUARY));
+        assertRow(FEBRUARY, "0", 0);
+    }
+
+    private Long seedOrder(ServiceOrder.ServiceStatus status, Date completedAt, String cost) {
+        ServiceOrder order = new ServiceOrder();
+        inTransaction(() -> {
+            order.setOrderNumber("SO-" + ++orders);
+            order.setServiceDate(new Date());
+            order.setStatus(status);
+            order.setPriority(ServiceOrder.ServicePriority.NORMAL);
+            order.setServiceDescription("Rebuild");
+            order.setIsWarrantyWork(Boolean.FALSE);
+            order.setActualCompletion(completedAt);
+            order.setActualCost(cost != null ? new BigDecimal(cost) : null);
+            order.setCustomer(entityManager.getReference(Customer.class, customer.getCustomerId()));
+            order.setVehicle(entityManager.getReference(Vehicle.class, vehicle.getVehicleId()));
+            entityManager.persist(order);
+        });
+        return order.getServiceOrderId();
+    }
+
+    // a copy of the order as an edit form would send it back
+    private ServiceOrder detached(Long orderId) {
+        ServiceOrder order = entityManager.find(ServiceOrder.class, orderId);
+        entityManager.detach(order);
+        return order;
+    }
+
+    private void inTransaction(Runnable work) {
+        entityManager.getTransaction().begin();
+        work.run();
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+        for (Synchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(Status.STATUS_COMMITTED);
+        }
+        synchronizations.clear();
+    }
+
+    private void assertRow(YearMonth month, String revenue, long orderCount) {
+        MonthlyRevenue row = entityManager.find(MonthlyRevenue.class, month.getYear() * 100 + month.getMonthValue());
+        assertAmount(revenue, row.getRevenue());
+        assertEquals(Long.valueOf(orderCount), row.getOrderCount());
+        entityManager.clear();
+    }
+
+    private static void assertAmount(String expected, BigDecimal actual) {
+        assertEquals(expected + " != " + actual, 0, new BigDecimal(expected).compareTo(actual));
+    }
+
+    private static Date middleOf(YearMonth month) {
+        return Date.from(month.atDay(15).atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private TransactionSynchronizationRegistry transactionRegistry() {
+        return (TransactionSynchronizationRegistry) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {TransactionSynchronizationRegistry.class}, (proxy, method, args) -> {
+                    if ("registerInterposedSynchronization".equals(method.getName())) {
+                        synchronizations.add((Synchronization) args[0]);
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static void inject(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    /**
+     * Rewrites the rollup's {@code INSERT ... ON CONFLICT} upserts, which H2 does not
+     * understand, to the equivalent {@code MERGE}.
+     */
+    public static class UpsertToMerge implements StatementInspector {
+
+        private static final String MERGE = "MERGE INTO monthly_revenue t USING (VALUES (CAST(? AS INT), "
+                + "CAST(? AS DECIMAL(12, 2)), CAST(? AS BIGINT))) s(m, r, c) ON t.revenue_month = s.m ";
+
+        private static final String INSERT = "WHEN NOT MATCHED THEN INSERT (revenue_month, revenue, order_count) "
+                + "VALUES (s.m, s.r, s.c)";
+
+        @Override
+        public String inspect(String sql) {
+            if (!sql.contains("ON CONFLICT")) {
+                return sql;
+            }
+            if (sql.contains("DO NOTHING")) {
+                return "MERGE INTO monthly_revenue t USING (VALUES (CAST(? AS INT))) s(m) ON t.revenue_month = s.m "
+                        + "WHEN NOT MATCHED THEN INSERT (revenue_month, revenue, order_count) VALUES (s.m, 0, 0)";
+            }
+            if (sql.contains("monthly_revenue.revenue + EXCLUDED.revenue")) {
+                return MERGE + "WHEN MATCHED THEN UPDATE SET revenue = t.revenue + s.r, "
+                        + "order_count = t.order_count + s.c " + INSERT;
+            }
+            return MERGE + "WHEN MATCHED THEN UPDATE SET revenue = s.r, order_count = s.c " + INSERT;
+        }
+    }
+}